@@ -1,17 +1,18 @@
 import controller.LoginController;
+import controller.WaitlistPromoter;
 import event.EventManager;
+import gateway.ManagerRegistry;
 import gateway.ResetAll;
-import gateway.SerializeData;
+import gateway.SessionServer;
 import interfaces.IManager;
 import interfaces.IPresenter;
-import message.MessageManager;
 import presenter.ErrorUI;
 import presenter.EventUI;
 import presenter.LoginUI;
 import presenter.MessageUI;
 import presenter.RequestUI;
-import user.SpeakerManager;
-import user.UserManager;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Scanner;
 
@@ -21,26 +22,49 @@ import java.util.Scanner;
  */
 public class Main {
 
+    private static final String DATA_DIRECTORY = "src/main/java/gateway/";
+    private static final int DEFAULT_PORT = 5000;
+    private static final long SHUTDOWN_TIMEOUT = 30; // seconds the running sessions get to finish
+    private static final long FLUSH_INTERVAL = 5; // seconds between two background flushes of the journal
+    private static final String RETENTION_OPTION = "--retention-days=";
+    private static final long DAY = 24L * 60 * 60 * 1000; // milliseconds in a day
+
+    private static long messageRetention = 0; // milliseconds sealed messages are kept, 0 keeps every message
+
     /**
      * The main method of the program to run the system
+     * Run with "server [port]" to serve many users at once over TCP instead of the console
+     * Add "--retention-days=N" to move sealed messages to the archive directory N days after they are
+     * sealed, by default every message is kept
      *
      * @param args args
      */
     public static void main(String[] args) {
-        runConference();
+        ArrayList<String> rest = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith(RETENTION_OPTION)) {
+                messageRetention = Long.parseLong(arg.substring(RETENTION_OPTION.length())) * DAY;
+            } else {
+                rest.add(arg);
+            }
+        }
+        if (rest.size() > 0 && rest.get(0).equals("server")) {
+            runServer(rest.size() > 1 ? Integer.parseInt(rest.get(1)) : DEFAULT_PORT);
+        } else {
+            runConference();
+        }
     }
 
     /**
      * The method to run the conference system
+     * The managers are loaded once, every login attaches to them
      */
     public static void runConference() {
 
 
-        SerializeData serializer = new SerializeData();
-
-
         boolean continueRun = true;
         Scanner reader = new Scanner(System.in);
+        ManagerRegistry registry = openRegistry();
 
         while (continueRun) {
             LoginUI lUI = new LoginUI();
@@ -49,61 +73,78 @@ public class Main {
             if (choice.equals("0")) {
                 continueRun = false;
             } else if (choice.equals("RESET")) {
+                registry.close();
                 ResetAll r = new ResetAll();
                 r.reset();
+                registry = openRegistry();
             } else if (choice.equals("1")) {
-                EventManager eventManager = serializer.deserializeEvent("src/main/java/gateway/eventManager.ser");
-                UserManager userManager = serializer.deserializeUser("src/main/java/gateway/userManager.ser");
-                MessageManager messageManager = serializer.deserializeMessage("src/main/java/gateway/messageManager.ser");
-                SpeakerManager speakerManager = serializer.deserializeSpeaker("src/main/java/gateway/speakerManager.ser");
+                HashMap<String, IManager> imanager = registry.attach();
                 LoginController lController = new LoginController();
-
-
-                HashMap<String, IManager> imanager = new HashMap<>();
-                imanager.put("userManager", userManager);
-                imanager.put("speakerManager", speakerManager);
-                imanager.put("messageManager", messageManager);
-                imanager.put("eventManager", eventManager);
-
-                MessageUI mUI = new MessageUI(imanager);
-                ErrorUI eUI = new ErrorUI();
-                EventUI eUI2 = new EventUI(eventManager);
-                RequestUI rUI = new RequestUI(imanager);
-                HashMap<String, IPresenter> ip = new HashMap<>();
-                ip.put("messageUI", mUI);
-                ip.put("errorUI", eUI);
-                ip.put("loginUI", lUI);
-                ip.put("eventUI", eUI2);
-                ip.put("requestUI", rUI);
-
-
-                lController.run(imanager, ip);
-
-
-                userManager = lController.getUserManager();
-                messageManager = lController.getMessageManager();
-                eventManager = lController.getEventManager();
-                speakerManager = lController.getSpeakerManager();
-                fileSave(userManager, messageManager, eventManager, speakerManager);
+                lController.run(imanager, createPresenters(imanager, lUI));
             }
         }
+        registry.close();
+    }
+
+    /**
+     * The method to serve the conference system to many users at once over TCP
+     * The managers are loaded once and shared by every session, and are saved when the server is shut down
+     *
+     * @param port The port to listen on
+     */
+    public static void runServer(int port) {
+        ManagerRegistry registry = openRegistry();
+        SessionServer server = new SessionServer(port, () -> {
+            HashMap<String, IManager> imanager = registry.attach();
+            new LoginController().run(imanager, createPresenters(imanager, new LoginUI()));
+        });
+        try {
+            new LoginUI().serverStarted(server.start());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(SHUTDOWN_TIMEOUT);
+            registry.close();
+        }));
+        server.serve();
+    }
+
+    /**
+     * Loads the managers into a registry and starts flushing it in the background
+     *
+     * @return The ManagerRegistry the sessions attach to
+     */
+    private static ManagerRegistry openRegistry() {
+        ManagerRegistry registry = new ManagerRegistry(DATA_DIRECTORY);
+        EventManager eventManager = registry.getEventManager();
+        eventManager.setWaitlistHandler(new WaitlistPromoter(eventManager, registry.getUserManager(),
+                registry.getMessageManager()));
+        registry.setMessageRetention(messageRetention, true);
+        registry.startFlushing(FLUSH_INTERVAL);
+        return registry;
     }
 
     /**
-     * The method to save the managers and event files.
+     * Creates the presenters of one session
      *
-     * @param uManager The usermanager from login controller
-     * @param mManager The messagemanager from login controller
-     * @param eManager The eventmanager from login controller
-     * @param sManager The speakermanager from login controller
+     * @param imanager The managers the presenters read from
+     * @param lUI      The LoginUI of the session
+     * @return HashMap of String keys that map to the presenters
      */
-    public static void fileSave(UserManager uManager, MessageManager mManager,
-                                EventManager eManager, SpeakerManager sManager) {
-        SerializeData serializer = new SerializeData();
-        serializer.serializeEvent("src/main/java/gateway/eventManager.ser", eManager);
-        serializer.serializeUser("src/main/java/gateway/userManager.ser", uManager);
-        serializer.serializeMessage("src/main/java/gateway/messageManager.ser", mManager);
-        serializer.serializeSpeaker("src/main/java/gateway/speakerManager.ser", sManager);
+    private static HashMap<String, IPresenter> createPresenters(HashMap<String, IManager> imanager, LoginUI lUI) {
+        MessageUI mUI = new MessageUI(imanager);
+        ErrorUI eUI = new ErrorUI();
+        EventUI eUI2 = new EventUI((EventManager) imanager.get("eventManager"));
+        RequestUI rUI = new RequestUI(imanager);
+        HashMap<String, IPresenter> ip = new HashMap<>();
+        ip.put("messageUI", mUI);
+        ip.put("errorUI", eUI);
+        ip.put("loginUI", lUI);
+        ip.put("eventUI", eUI2);
+        ip.put("requestUI", rUI);
+        return ip;
     }
 
 }
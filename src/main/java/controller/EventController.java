@@ -12,6 +12,7 @@ import presenter.LoginUI;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Scanner;
 
 /**
@@ -111,6 +112,7 @@ public class EventController {
 
     /**
      * Creates a new events based on parameters
+     * The times are parsed here, once, and passed on as ints
      * Organizer exclusive
      *
      * @param roomID    The Id of the room.
@@ -121,7 +123,16 @@ public class EventController {
      * @return String of event ID
      */
     public String addEventToSchedule(String roomID, String startTime, String endTime, String eventName, Integer capacity) {
-        String eventID = eventManager.addEvent(roomID, startTime, endTime, eventName, capacity);
+        int start;
+        int end;
+        try {
+            start = Integer.parseInt(startTime);
+            end = Integer.parseInt(endTime);
+        } catch (Exception e) {
+            errorUI.invalidTime();
+            return "-2";
+        }
+        String eventID = eventManager.addEvent(roomID, start, end, eventName, capacity);
         switch (eventID) {
             case "-2": //invalid time
                 errorUI.invalidTime();
@@ -146,20 +157,8 @@ public class EventController {
         String choice = modifyEventsOptions();
         if (choice.equals("1")) {
             String option = deleteEvent();
-            if (!eventManager.getEventList().containsKey(option)) {
-                errorUI.invalidEventID();
-                return;
-            }
-            for (String speaker : eventManager.getSpeakers(option)) {
-                speakerManager.removeSpeakerEvent(speaker,
-                        eventManager.getStartTime(option));
-            }
-            for (String attendee : eventManager.getAttendees(option)) {
-                userManager.removeUserEvent(attendee,
-                        eventManager.getStartTime(option));
-            }
-            String result = eventManager.delEvent(option);
-            if (result.equals("0")) {
+            EventTransaction delete = new EventTransaction(eventManager, userManager, speakerManager);
+            if (delete.deleteEvent(option).commit() == EventTransaction.OK) {
                 currentUI.actionSuccessful();
             } else {
                 errorUI.invalidEventID();
@@ -289,12 +288,13 @@ public class EventController {
     public boolean addSpeakerToEvent(String speakerUsername, String eventID) {
         if (speakerManager.getSpeakerMap().containsKey(speakerUsername)) {
             if (eventManager.getEventList().containsKey(eventID)) {
-                String time = eventManager.getStartTime(eventID);
+                int time = eventManager.getStartTime(eventID);
                 boolean capPass = false;
                 if (eventManager.getSpeakers(eventID).size() == 0 || eventManager.getType(eventID) == 2) {
                     capPass = true;
                 }
-                if (speakerManager.checkIfSpeakerAvail(speakerUsername, time) && capPass) {
+                if (speakerManager.checkIfSpeakerAvail(speakerUsername, time, eventManager.getEndTime(eventID))
+                        && capPass) {
                     eventManager.addSpeaker(speakerUsername, eventID);
                     speakerManager.addSpeakerEvent(speakerUsername, time, eventID);
                     currentUI.actionSuccessful();
@@ -349,9 +349,9 @@ public class EventController {
     /**
      * Returns the event list stored in this controller
      *
-     * @return HashMap   The event list stored in this controller
+     * @return Map   The event list stored in this controller
      */
-    public HashMap<String, Event> getEventList() {
+    public Map<String, Event> getEventList() {
         return eventManager.getEventList();
     }
 
@@ -0,0 +1,360 @@
+package controller;
+
+import event.EventManager;
+import user.SpeakerManager;
+import user.UserManager;
+
+import java.util.ArrayList;
+import java.util.TreeSet;
+
+/**
+ * The EventTransaction class stages changes that span an Event and the schedules of its Users and Speakers,
+ * and commits them as one unit of work.
+ *
+ * Commit takes the locks of the events it changes and of the Users who sign up, checks every staged change
+ * against the current state and only then applies them, so other threads never see an Event whose attendees
+ * disagree with the Users' schedules. Transactions on different events do not wait on each other.
+ * If applying a change fails, the changes that were already applied are undone in reverse order.
+ *
+ * Every change is checked once before seats are reserved, so a change that is not valid (i.e. an unknown
+ * event or a non-VIP signing up for a VIP event) is reported as such and never as a full event. Seats for
+ * signups are then reserved before any lock is taken, so a transaction on a full event is turned away
+ * without waiting, and a seat that was reserved cannot be taken by another transaction.
+ *
+ * @version 1.0
+ */
+public class EventTransaction {
+
+    // Results of commit
+    public static final int OK = 0;
+    public static final int INVALID_USER = 1;
+    public static final int INVALID_EVENT = 2;
+    public static final int UNAVAILABLE_USER = 3;
+    public static final int NOT_VIP = 4;
+    public static final int EVENT_FULL = 5;
+    public static final int NOT_ATTENDING = 6;
+
+    private EventManager eventManager;
+    private UserManager userManager;
+    private SpeakerManager speakerManager;
+    private ArrayList<Change> changes;
+
+    /**
+     * Constructor for EventTransaction, initializes an empty unit of work over the managers
+     *
+     * @param eventManager   The EventManager of the events
+     * @param userManager    The UserManager of the Users' schedules
+     * @param speakerManager The SpeakerManager of the Speakers' schedules
+     */
+    public EventTransaction(EventManager eventManager, UserManager userManager,
+                            SpeakerManager speakerManager) {
+        this.eventManager = eventManager;
+        this.userManager = userManager;
+        this.speakerManager = speakerManager;
+        this.changes = new ArrayList<>();
+    }
+
+    /**
+     * Stages signing a User up for an event: the User is added to the event's attendees
+     * and the event is added to the User's schedule.
+     *
+     * @param username The username of the User.
+     * @param eventID  The ID of the event.
+     * @return this EventTransaction, so changes can be chained.
+     */
+    public EventTransaction addAttendee(final String username, final String eventID) {
+        changes.add(new Change() {
+            private int time;
+            private boolean reserved;
+
+            public String eventID() {
+                return eventID;
+            }
+
+            public String username() {
+                return username;
+            }
+
+            public int reserve() {
+                reserved = eventManager.reserveSeat(eventID);
+                if (!reserved && eventManager.getEvent(eventID) == null) {
+                    // deleted after it was checked
+                    return INVALID_EVENT;
+                }
+                return reserved ? OK : EVENT_FULL;
+            }
+
+            public void release() {
+                if (reserved) {
+                    eventManager.releaseSeat(eventID);
+                    reserved = false;
+                }
+            }
+
+            public int check() {
+                if (!userManager.getUserMap().containsKey(username)) {
+                    return INVALID_USER;
+                }
+                if (eventManager.getEvent(eventID) == null) {
+                    return INVALID_EVENT;
+                }
+                time = eventManager.getStartTime(eventID);
+                if (!userManager.checkIfUserAvail(username, time, eventManager.getEndTime(eventID))
+                        || eventManager.hasAttendee(eventID, username)) {
+                    return UNAVAILABLE_USER;
+                }
+                if (eventManager.getType(eventID) == 3 && !userManager.checkType(username).equals("VIP")) {
+                    return NOT_VIP;
+                }
+                return OK;
+            }
+
+            public void apply() {
+                // the reservation is taken or given back by confirmAttendee
+                reserved = false;
+                if (!eventManager.confirmAttendee(username, eventID)) {
+                    throw new IllegalStateException("Could not add " + username + " to event " + eventID);
+                }
+                userManager.addUserEvent(username, time, eventID);
+            }
+
+            public void undo() {
+                if (eventManager.hasAttendee(eventID, username)) {
+                    eventManager.removeAttendee(username, eventID);
+                }
+                if (eventID.equals(userManager.getAttendingSchedule(username).get(time))) {
+                    userManager.removeUserEvent(username, time);
+                }
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Stages deleting an event: the event is removed from the schedules of its Speakers and
+     * attendees, and then deleted. The Speakers and attendees are read when the transaction commits.
+     * Deleting an event cannot be undone, so it should be the last change of a transaction.
+     *
+     * @param eventID The ID of the event.
+     * @return this EventTransaction, so changes can be chained.
+     */
+    public EventTransaction deleteEvent(final String eventID) {
+        changes.add(new Change() {
+            private int time;
+            private ArrayList<String> speakers;
+            private ArrayList<String> attendees;
+
+            public String eventID() {
+                return eventID;
+            }
+
+            public String username() {
+                return null;
+            }
+
+            public int reserve() {
+                return OK;
+            }
+
+            public void release() {
+            }
+
+            public int check() {
+                if (eventManager.getEvent(eventID) == null) {
+                    return INVALID_EVENT;
+                }
+                time = eventManager.getStartTime(eventID);
+                speakers = new ArrayList<>(eventManager.getSpeakers(eventID));
+                attendees = new ArrayList<>(eventManager.getAttendees(eventID));
+                return OK;
+            }
+
+            public void apply() {
+                for (String speaker : speakers) {
+                    speakerManager.removeSpeakerEvent(speaker, time);
+                }
+                for (String attendee : attendees) {
+                    userManager.removeUserEvent(attendee, time);
+                }
+                if (!eventManager.delEvent(eventID).equals("0")) {
+                    throw new IllegalStateException("Could not delete event " + eventID);
+                }
+            }
+
+            public void undo() {
+                for (String speaker : speakers) {
+                    speakerManager.addSpeakerEvent(speaker, time, eventID);
+                }
+                for (String attendee : attendees) {
+                    userManager.addUserEvent(attendee, time, eventID);
+                }
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Stages cancelling a User's signup: the event is removed from the User's schedule and the User
+     * is removed from the event's attendees, which gives the seat to the first user on the waitlist.
+     * Giving the seat away cannot be undone, so it should be the last change of a transaction.
+     *
+     * The User's lock is not held while the seat is given away, as the user who is promoted has their
+     * schedule locked as well; the lock of the event keeps other transactions on the event out.
+     *
+     * @param username The username of the User.
+     * @param eventID  The ID of the event.
+     * @return this EventTransaction, so changes can be chained.
+     */
+    public EventTransaction removeAttendee(final String username, final String eventID) {
+        changes.add(new Change() {
+            private int time;
+            private boolean removed;
+
+            public String eventID() {
+                return eventID;
+            }
+
+            public String username() {
+                return null;
+            }
+
+            public int reserve() {
+                return OK;
+            }
+
+            public void release() {
+            }
+
+            public int check() {
+                if (!userManager.getUserMap().containsKey(username)) {
+                    return INVALID_USER;
+                }
+                if (eventManager.getEvent(eventID) == null) {
+                    return INVALID_EVENT;
+                }
+                time = eventManager.getStartTime(eventID);
+                if (!eventManager.hasAttendee(eventID, username)
+                        || !eventID.equals(userManager.getAttendingSchedule(username).get(time))) {
+                    return NOT_ATTENDING;
+                }
+                return OK;
+            }
+
+            public void apply() {
+                userManager.removeUserEvent(username, time);
+                removed = true;
+                eventManager.removeAttendee(username, eventID);
+            }
+
+            public void undo() {
+                if (removed) {
+                    userManager.addUserEvent(username, time, eventID);
+                    removed = false;
+                }
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Checks and applies every staged change as one unit of work.
+     * Nothing is applied if a change does not pass its check.
+     *
+     * @return OK if every change was applied, otherwise the result of the first change that did not pass.
+     */
+    public int commit() {
+        ArrayList<String> eventIDs = new ArrayList<>();
+        TreeSet<String> usernames = new TreeSet<>();
+        for (Change change : changes) {
+            eventIDs.add(change.eventID());
+            if (change.username() != null && userManager.getUserMap().containsKey(change.username())) {
+                usernames.add(change.username());
+            }
+        }
+        try {
+            // unlocked pre-check, so an invalid change is reported as such and never as a full event;
+            // every change is checked again under the locks before it is applied
+            for (Change change : changes) {
+                int result = change.check();
+                if (result != OK) {
+                    return result;
+                }
+            }
+            for (Change change : changes) {
+                int result = change.reserve();
+                if (result != OK) {
+                    return result;
+                }
+            }
+            return eventManager.withEventLocks(eventIDs,
+                    () -> withUserLocks(new ArrayList<>(usernames), 0));
+        } finally {
+            // seats of changes that were not applied are given back
+            for (Change change : changes) {
+                change.release();
+            }
+            changes.clear();
+        }
+    }
+
+    // Private helper function
+    // Takes the locks of the Users in order of username, then checks and applies the changes
+    private int withUserLocks(ArrayList<String> usernames, int next) {
+        if (next < usernames.size()) {
+            synchronized (userManager.getUserMap().get(usernames.get(next))) {
+                return withUserLocks(usernames, next + 1);
+            }
+        }
+        return checkAndApply();
+    }
+
+    // Private helper function
+    // Checks every change, then applies them, the caller holds the locks of the changes
+    private int checkAndApply() {
+        for (Change change : changes) {
+            int result = change.check();
+            if (result != OK) {
+                return result;
+            }
+        }
+        int applied = 0;
+        try {
+            for (Change change : changes) {
+                change.apply();
+                applied++;
+            }
+        } catch (RuntimeException e) {
+            // the change that failed may have been partly applied
+            for (int i = Math.min(applied, changes.size() - 1); i >= 0; i--) {
+                changes.get(i).undo();
+            }
+            throw e;
+        }
+        return OK;
+    }
+
+    /**
+     * One staged change of a transaction
+     */
+    private interface Change {
+        // The event the change is made to
+        String eventID();
+
+        // The User whose schedule the change checks and adds to, null if none
+        String username();
+
+        // Reserves the seat the change needs after it was checked, returns OK or the reason it cannot be reserved
+        int reserve();
+
+        // Gives back the seat reserved by reserve if the change did not take it
+        void release();
+
+        // Checks the change against the current state, returns OK or the reason it cannot be applied
+        // Called once before the seats are reserved, and again under the locks
+        int check();
+
+        void apply();
+
+        void undo();
+    }
+}
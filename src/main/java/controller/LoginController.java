@@ -73,7 +73,7 @@ public class LoginController {
                     String tempPW = registerInfo.get(1);
                     String tempName = registerInfo.get(2);
                     String tempType = registerInfo.get(3);
-                    if (userController.getUserManager().getUserMap().containsKey(tempUser)) {
+                    if (!userController.getUserManager().isUsernameAvailable(tempUser)) {
                         errorUI.usernameTaken();
                     } else {
                         userController.addUser(tempType, tempName, tempUser, tempPW);
@@ -306,7 +306,7 @@ public class LoginController {
         currentUI = (LoginUI) presenters.get("loginUI");
         errorUI = (ErrorUI) presenters.get("errorUI");
         userController = new UserController(managers, presenters);
-        convertToPDF = new ConvertToPDF();
+        convertToPDF = new ConvertToPDF((EventManager) managers.get("eventManager"));
         enterUserInfo();
         userController.setUser(username);
         if (!quit) {
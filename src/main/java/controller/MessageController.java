@@ -8,6 +8,7 @@ import user.SpeakerManager;
 import event.EventManager;
 import interfaces.IManager;
 import interfaces.IPresenter;
+import interfaces.IRecipientGroups;
 import message.MessageManager;
 import presenter.MessageUI;
 import presenter.ErrorUI;
@@ -406,30 +407,19 @@ public class MessageController {
         if (userManager.getUserMap().containsKey(organizerUsername)) {
             switch (type) {
                 case "Everyone":
-                    ArrayList<String> Everyone = new ArrayList<>();
-                    Everyone.addAll(userManager.getUserMap().keySet());
-                    messageManager.sendMessage(organizerUsername, Everyone, message, false);
+                    messageManager.sendBroadcast(organizerUsername, IRecipientGroups.EVERYONE, message);
                     break;
                 case "Attendee":
-                    ArrayList<String> Attendees = new ArrayList<>();
-                    Attendees.addAll(userManager.getAttendeeMap().keySet());
-                    Attendees.addAll(userManager.getVIPMap().keySet());
-                    messageManager.sendMessage(organizerUsername, Attendees, message, false);
+                    messageManager.sendBroadcast(organizerUsername, IRecipientGroups.ATTENDEES, message);
                     break;
                 case "Speaker":
-                    ArrayList<String> Speakers = new ArrayList<>();
-                    Speakers.addAll(speakerManager.getSpeakerMap().keySet());
-                    messageManager.sendMessage(organizerUsername, Speakers, message, false);
+                    messageManager.sendBroadcast(organizerUsername, IRecipientGroups.SPEAKERS, message);
                     break;
                 case "Organizer":
-                    ArrayList<String> Organizers = new ArrayList<>();
-                    Organizers.addAll(userManager.getOrganizerMap().keySet());
-                    messageManager.sendMessage(organizerUsername, Organizers, message, false);
+                    messageManager.sendBroadcast(organizerUsername, IRecipientGroups.ORGANIZERS, message);
                     break;
                 case "VIP":
-                    ArrayList<String> VIPs = new ArrayList<>();
-                    VIPs.addAll(userManager.getVIPMap().keySet());
-                    messageManager.sendMessage(organizerUsername, VIPs, message, false);
+                    messageManager.sendBroadcast(organizerUsername, IRecipientGroups.VIPS, message);
                     break;
             }
         } else {
@@ -94,17 +94,17 @@ public class UserController {
     public void addUser(String type, String name, String username, String password) {
         switch (type) {
             case "Attendee":
-                if (!userManager.getUserMap().containsKey(username))
+                if (userManager.isUsernameAvailable(username))
                     userManager.newAttendee(name, username, password);
                 else errorUI.usernameTaken();
                 break;
             case "Organizer":
-                if (!userManager.getUserMap().containsKey(username))
+                if (userManager.isUsernameAvailable(username))
                     userManager.newOrganizer(name, username, password);
                 else errorUI.usernameTaken();
                 break;
             case "VIP":
-                if (!userManager.getUserMap().containsKey(username))
+                if (userManager.isUsernameAvailable(username))
                     userManager.newVIP(name, username, password);
                 else errorUI.usernameTaken();
                 break;
@@ -179,24 +179,11 @@ public class UserController {
             loginUI.signUpForEventReporter(3);
             return;
         }
-        String roomid = eventManager.getRoomID(eventID);
-        if (roomid.equals("0")) {
-            errorUI.invalidEventID();
-        }
-        int roomcap = eventManager.getRoomCap(roomid);
-        int speakercount = 0;
-        int attendeecount = 0;
-        try {
-            speakercount = eventManager.getSpeakers(eventID).size();
-            attendeecount = eventManager.getAttendees(eventID).size();
-        } catch (Exception e) {
+        // whether a seat is free is decided by the EventTransaction
+        if (eventManager.getEvent(eventID) == null) {
             errorUI.invalidEventID();
             return;
         }
-        if (attendeecount + speakercount + 1 > roomcap) {
-            errorUI.maxroomreach();
-            return;
-        }
         if (userManager.checkType(userID).equals("Attendee")
                 || userManager.checkType(userID).equals("Organizer")
                 || userManager.checkType(userID).equals("VIP")) {
@@ -241,31 +228,30 @@ public class UserController {
      * @return boolean if the addition was successful
      */
     private boolean addAttendeeToEvent(String username, String eventID) {
-        if (userManager.getUserMap().containsKey(username)) {
-            if (eventManager.getEventList().containsKey(eventID)) {
-                String time = eventManager.getStartTime(eventID);
-                if (userManager.checkIfUserAvail(username, time)) {
-                    if (eventManager.getType(eventID) == 3) {
-                        if (userManager.checkType(username).equals("VIP")) {
-                            eventManager.addAttendee(username, eventID);
-                            userManager.addUserEvent(username, time, eventID);
-                            return true;
-                        } else {
-                            errorUI.notVIP();
-                        }
-                    } else {
-                        eventManager.addAttendee(username, eventID);
-                        userManager.addUserEvent(username, time, eventID);
-                        return true;
-                    }
+        EventTransaction signUp = new EventTransaction(eventManager, userManager, speakerManager);
+        switch (signUp.addAttendee(username, eventID).commit()) {
+            case EventTransaction.OK:
+                return true;
+            case EventTransaction.INVALID_USER:
+                errorUI.invalidUser();
+                break;
+            case EventTransaction.INVALID_EVENT:
+                errorUI.invalidEventID();
+                break;
+            case EventTransaction.UNAVAILABLE_USER:
+                errorUI.unavailableUser();
+                break;
+            case EventTransaction.NOT_VIP:
+                errorUI.notVIP();
+                break;
+            case EventTransaction.EVENT_FULL:
+                // wait for a seat instead of retrying by hand
+                if (eventManager.joinWaitlist(username, eventID, userManager.checkType(username).equals("VIP"))) {
+                    loginUI.signUpForEventReporter(5);
                 } else {
-                    errorUI.unavailableUser();
+                    errorUI.maxroomreach();
                 }
-            } else {
-                errorUI.invalidEventID();
-            }
-        } else {
-            errorUI.invalidUser();
+                break;
         }
         return false;
     }
@@ -298,7 +284,7 @@ public class UserController {
         info.add(name);
         info.add(password);
 
-        if (userManager.getUserMap().containsKey(info.get(0))) {
+        if (!userManager.isUsernameAvailable(info.get(0))) {
             errorUI.usernameTaken();
         } else {
             switch (userType) {
@@ -404,12 +390,16 @@ public class UserController {
                 loginUI.time();
                 seeAttendeeSchedule();
                 Scanner timer = new Scanner(System.in);
-                String time = timer.nextLine();
-                if (userManager.getAttendingSchedule(username).containsKey(time)) {
-                    String eventID = userManager.getAttendingSchedule(username).get(time);
-                    userManager.removeUserEvent(username, time);
-                    eventManager.removeAttendee(username, eventID);
-                } else {
+                int time;
+                try {
+                    time = Integer.parseInt(timer.nextLine());
+                } catch (Exception e) {
+                    errorUI.invalidInput();
+                    break;
+                }
+                String eventID = userManager.getAttendingSchedule(username).get(time);
+                EventTransaction cancel = new EventTransaction(eventManager, userManager, speakerManager);
+                if (eventID == null || cancel.removeAttendee(username, eventID).commit() != EventTransaction.OK) {
                     errorUI.invalidInput();
                 }
                 break;
@@ -0,0 +1,88 @@
+package controller;
+
+import event.EventManager;
+import interfaces.IWaitlistHandler;
+import message.MessageManager;
+import user.User;
+import user.UserManager;
+
+import java.util.ArrayList;
+
+/**
+ * The WaitlistPromoter class moves a user off an event's waitlist: the event is added to the user's
+ * schedule if they can still take the seat, and the user is sent a message that they got a seat.
+ * A user can take a seat if they are free at the time of the event, are not attending it yet and
+ * are a VIP if the event is VIP only, the same checks as signing up through an EventTransaction.
+ * The messages are sent from UserManager.SYSTEM_USERNAME, which is not a User and cannot be registered.
+ *
+ * @version 1.0
+ */
+public class WaitlistPromoter implements IWaitlistHandler {
+
+    private EventManager eventManager;
+    private UserManager userManager;
+    private MessageManager messageManager;
+
+    /**
+     * Constructor for WaitlistPromoter
+     *
+     * @param eventManager   The EventManager of the events
+     * @param userManager    The UserManager of the Users' schedules
+     * @param messageManager The MessageManager the promoted Users are messaged through
+     */
+    public WaitlistPromoter(EventManager eventManager, UserManager userManager,
+                            MessageManager messageManager) {
+        this.eventManager = eventManager;
+        this.userManager = userManager;
+        this.messageManager = messageManager;
+    }
+
+    /**
+     * Adds the event to the User's schedule and messages them, unless the User can no longer
+     * take the seat, see isEligible.
+     *
+     * @param userID  The username of the User at the front of the waitlist.
+     * @param eventID The event ID of the event with a free seat.
+     * @return true if the User took the seat.
+     */
+    @Override
+    public boolean promote(String userID, String eventID) {
+        User user = userManager.getUserMap().get(userID);
+        if (user == null) {
+            return false;
+        }
+        synchronized (user) {
+            if (!isEligible(userID, eventID)) {
+                return false;
+            }
+            userManager.addUserEvent(userID, eventManager.getStartTime(eventID), eventID);
+        }
+        ArrayList<String> recipient = new ArrayList<>();
+        recipient.add(userID);
+        messageManager.sendMessage(UserManager.SYSTEM_USERNAME, recipient, "A seat opened up in event " + eventID + " ("
+                + eventManager.getEventName(eventID) + "), you have been moved off the waitlist and signed up.",
+                false);
+        return true;
+    }
+
+    /**
+     * Checks if a User could take a seat in an event: the User and the event exist, the User is not
+     * attending it yet, is a VIP if the event is VIP only, and has no other event at its time.
+     *
+     * @param userID  The username of the User.
+     * @param eventID The event ID of the event.
+     * @return true if the User could take a seat.
+     */
+    @Override
+    public boolean isEligible(String userID, String eventID) {
+        if (!userManager.getUserMap().containsKey(userID) || eventManager.getEvent(eventID) == null
+                || eventManager.hasAttendee(eventID, userID)) {
+            return false;
+        }
+        if (eventManager.getType(eventID) == 3 && !userManager.checkType(userID).equals("VIP")) {
+            return false;
+        }
+        return userManager.checkIfUserAvail(userID, eventManager.getStartTime(eventID),
+                eventManager.getEndTime(eventID));
+    }
+}
@@ -1,25 +1,40 @@
 package event;
 
 
+import interfaces.IUserRegistry;
+import util.IntSet;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
 
 
 /**
+ * The attendees and speakers of an Event are kept by user ID (see IUserRegistry) in insertion-ordered
+ * IntSets, so checking, adding and removing a user is O(1) while the lists still come out in the order
+ * users signed up.
+ * The seats taken by attendees are counted by a SeatCounter, so a seat can be reserved without a lock.
+ * The room of the Event also holds its speakers, so attendees get at most the seats of the room that the
+ * speakers leave free, as well as at most the capacity of the Event.
+ * Users waiting for a seat in a full Event are kept in its Waitlist.
+ *
  * @author Eric Lin
  * @version 1.0
  */
 public class Event implements Serializable {
 
-    private ArrayList<String> attendeeList;
-    private ArrayList<String> speakerList;
-    private String startTime;
-    private String endTime;
+    private IntSet attendeeList;
+    private IntSet speakerList;
+    private int startTime;
+    private int endTime;
     private String eventID;
     private String roomID;
     private int capacity;
+    private transient int roomCapacity;
     private String eventName;
     private int type;
+    private transient SeatCounter seats;
+    private Waitlist waitlist;
 
     /**
      * Constructor of the Event class, initializes the Event entity.
@@ -31,17 +46,29 @@ public class Event implements Serializable {
      * @param eventName The event name of the Event
      * @param capacity  The capacity of the event
      */
-    public Event(String eventID, String roomID, String startTime, String endTime,
+    public Event(String eventID, String roomID, int startTime, int endTime,
                  String eventName, Integer capacity) {
         this.eventID = eventID;
         this.roomID = roomID;
         this.startTime = startTime;
         this.endTime = endTime;
-        this.attendeeList = new ArrayList<>();
-        this.speakerList = new ArrayList<>();
+        this.attendeeList = new IntSet();
+        this.speakerList = new IntSet();
         this.capacity = capacity;
         this.eventName = eventName;
         this.type = 1; // normal event
+        this.roomCapacity = Integer.MAX_VALUE; // set by the EventManager
+        this.seats = new SeatCounter(capacity, 0);
+        this.waitlist = new Waitlist();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.roomCapacity = Integer.MAX_VALUE; // set by the EventManager
+        this.seats = new SeatCounter(seatLimit(), attendeeList.size());
+        if (waitlist == null) {
+            waitlist = new Waitlist(); // saved before events had waitlists
+        }
     }
 
     /**
@@ -51,7 +78,7 @@ public class Event implements Serializable {
      * @param startTime start time of the Event, accepted as integer in the
      *                  format of YearMonthDateHour (i.e. 2020110512).
      */
-    public void setStartTime(String startTime) {
+    public void setStartTime(int startTime) {
         this.startTime = startTime;
     }
 
@@ -62,7 +89,7 @@ public class Event implements Serializable {
      * @param endTime end time of the Event, accepted as integer in the
      *                format of YearMonthDateHour (i.e. 2020110512).
      */
-    public void setEndTime(String endTime) {
+    public void setEndTime(int endTime) {
         this.endTime = endTime;
     }
 
@@ -71,7 +98,7 @@ public class Event implements Serializable {
      *
      * @return the start time of the event.
      */
-    public String getStartTime() {
+    public int getStartTime() {
         return startTime;
     }
 
@@ -99,7 +126,7 @@ public class Event implements Serializable {
      *
      * @return the end time of the Event.
      */
-    public String getEndTime() {
+    public int getEndTime() {
         return endTime;
     }
 
@@ -131,49 +158,115 @@ public class Event implements Serializable {
     }
 
     /**
-     * Adds a Speaker to the speakerList of the Event.
+     * Sets the capacity of the room the Event takes place in, which has to hold the attendees and
+     * the speakers.
+     *
+     * @param roomCapacity The capacity of the room.
+     */
+    public void setRoomCapacity(int roomCapacity) {
+        this.roomCapacity = roomCapacity;
+        seats.setCapacity(seatLimit());
+    }
+
+    // Private helper function
+    // Returns the number of seats attendees can take, the seats of the room the speakers leave free
+    // and at most the capacity of the Event
+    private int seatLimit() {
+        return Math.min(capacity, roomCapacity - speakerList.size());
+    }
+
+    /**
+     * Adds a Speaker to the speakerList of the Event. The Speaker takes a seat of the room.
+     *
+     * @param speakerID The Speaker user ID.
+     */
+    public void addSpeaker(int speakerID) {
+        if (speakerList.add(speakerID)) {
+            seats.setCapacity(seatLimit());
+        }
+    }
+
+    /**
+     * Removes a Speaker from the speakerList of the Event, giving its seat of the room back.
+     *
+     * @param speakerID The Speaker user ID.
+     */
+    public void removeSpeaker(int speakerID) {
+        if (speakerList.remove(speakerID)) {
+            seats.setCapacity(seatLimit());
+        }
+    }
+
+    /**
+     * Adds an Attendee to the attendeeList of the Event without a reservation, i.e. when
+     * a saved Event is loaded. The seat is counted even if the Event is full.
+     *
+     * @param userID The Attendee user ID.
+     */
+    public void addAttendee(int userID) {
+        if (attendeeList.add(userID)) {
+            seats.add();
+        }
+    }
+
+    /**
+     * Reserves a seat for an Attendee that is signing up.
      *
-     * @param speakerID The Speaker userID.
+     * @return true if a seat is reserved, false if the Event is full.
      */
-    public void addSpeaker(String speakerID) {
-        speakerList.add(speakerID);
+    public boolean reserveSeat() {
+        return seats.reserve();
     }
 
     /**
-     * Adds an Attendee to the attendeeList of the Event.
+     * Gives back a seat reserved by reserveSeat.
+     */
+    public void releaseSeat() {
+        seats.release();
+    }
+
+    /**
+     * Adds an Attendee to the attendeeList of the Event, in a seat reserved by reserveSeat.
+     * The reservation is released if the Attendee is already in the Event.
      *
-     * @param userID The Attendee userID.
+     * @param userID The Attendee user ID.
+     * @return true if the Attendee is added.
      */
-    public void addAttendee(String userID) {
-        attendeeList.add(userID);
+    public boolean confirmAttendee(int userID) {
+        if (attendeeList.add(userID)) {
+            seats.confirm();
+            return true;
+        }
+        seats.release();
+        return false;
     }
 
     /**
-     * Return the current availability of the Event. Returns true if the Event
-     * is at full capacity, returns false if the Event is not at full capacity.
+     * Return the current availability of the Event. Returns true if every seat
+     * of the Event is taken or reserved, returns false otherwise.
      *
      * @return A boolean to indicate if the Event is full.
      */
     public boolean isFull() {
-        return attendeeList.size() == capacity;
+        return seats.isFull();
     }
 
     /**
-     * Returns the list of attendees (IDs).
+     * Returns the attendees (user IDs), in the order they were added.
      *
-     * @return List of attendees' ID
+     * @return Copy of the attendees' ID
      */
-    public ArrayList<String> getAttendees() {
-        return attendeeList;
+    public int[] getAttendees() {
+        return attendeeList.toArray();
     }
 
     /**
-     * Returns the list of speakers (IDs).
+     * Returns the speakers (user IDs), in the order they were added.
      *
-     * @return List of speakers' ID
+     * @return Copy of the speakers' ID
      */
-    public ArrayList<String> getSpeakers() {
-        return speakerList;
+    public int[] getSpeakers() {
+        return speakerList.toArray();
     }
 
     /**
@@ -182,7 +275,7 @@ public class Event implements Serializable {
      * @param userID user ID provided to perform the check.
      * @return boolean to represent if they user is in attendee list.
      */
-    public boolean hasAttendee(String userID) {
+    public boolean hasAttendee(int userID) {
         return (attendeeList.contains(userID));
     }
 
@@ -192,17 +285,48 @@ public class Event implements Serializable {
      * @param userID user ID provided to perform the check.
      * @return boolean to represent if they user is in speaker list.
      */
-    public boolean hasSpeaker(String userID) {
+    public boolean hasSpeaker(int userID) {
         return (speakerList.contains(userID));
     }
 
+    /**
+     * Replaces every attendee and speaker ID given out by one registry with the ID of the same
+     * username in another registry.
+     *
+     * @param from The registry the IDs were given out by.
+     * @param to   The registry the IDs are moved to.
+     */
+    public void remap(IUserRegistry from, IUserRegistry to) {
+        IntSet attendees = new IntSet();
+        for (int userID : attendeeList.toArray()) {
+            attendees.add(to.getUserID(from.getUsername(userID)));
+        }
+        attendeeList = attendees;
+        IntSet speakers = new IntSet();
+        for (int userID : speakerList.toArray()) {
+            speakers.add(to.getUserID(from.getUsername(userID)));
+        }
+        speakerList = speakers;
+    }
+
+    /**
+     * Returns the waitlist of the Event.
+     *
+     * @return The Waitlist of users waiting for a seat.
+     */
+    public Waitlist getWaitlist() {
+        return waitlist;
+    }
+
     /**
      * Removes the user from the attendee list.
      *
      * @param userID user ID provided to perform the removal
      */
-    public void removeAttendee(String userID) {
-        attendeeList.remove(userID);
+    public void removeAttendee(int userID) {
+        if (attendeeList.remove(userID)) {
+            seats.remove();
+        }
     }
 
 
@@ -213,6 +337,16 @@ public class Event implements Serializable {
      */
     public void setCapacity(Integer capacity) {
         this.capacity = capacity;
+        seats.setCapacity(seatLimit());
+    }
+
+    /**
+     * Gets the capacity of the event.
+     *
+     * @return Integer that contains the capacity.
+     */
+    public int getCapacity() {
+        return capacity;
     }
 
     /**
@@ -1,21 +1,63 @@
 package event;
 
+import interfaces.IEventTimes;
+import interfaces.IJournal;
 import interfaces.IManager;
+import interfaces.IUserRegistry;
+import interfaces.IWaitlistHandler;
+import util.UserRegistry;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
+ * The EventManager class manages the events and rooms. It also keeps, for every user, the IDs of
+ * the events they attend and speak at, so one user's schedule is read without going through every event.
+ *
+ * The EventManager can be used by many sessions at once. Events and rooms are kept in ConcurrentHashMaps
+ * and their IDs come from atomic counters. Changes to an event hold the lock of the event's stripe, and
+ * bookings hold the lock of the room's stripe, so signups to different events do not wait on each other.
+ * Locks are always taken in the order event stripes, room stripe, then the ID lock.
+ *
+ * When a seat of an event is freed, the users on its waitlist are promoted into it by the waitlist handler,
+ * VIPs first. Without a handler (i.e. while the journal is replayed) nobody is promoted, since the journal
+ * already holds the promotions that were made.
+ *
  * @author Eric Lin
  * @version 1.0
  */
-public class EventManager implements Serializable, IManager {
+public class EventManager implements Serializable, IManager, IEventTimes {
 
-    private HashMap<String, Room> eventSchedule;
-    private HashMap<String, Event> eventList;
-    private int eventCount;
-    private int roomCount;
+    // Number of lock stripes for events and for rooms
+    private static final int STRIPES = 64;
+
+    private ConcurrentHashMap<String, Room> eventSchedule;
+    private ConcurrentHashMap<String, Event> eventList;
+    private AtomicInteger eventCount;
+    private AtomicInteger roomCount;
+    private ConcurrentHashMap<String, Set<String>> attendeeEvents;
+    private ConcurrentHashMap<String, Set<String>> speakerEvents;
+    private transient Object[] eventLocks;
+    private transient Object[] roomLocks;
+    private transient Object idLock;
+    private transient IJournal journal;
+    private final AtomicLong changes = new AtomicLong();
+    private IUserRegistry users;
+    private transient IWaitlistHandler waitlistHandler;
 
     /**
      * Constructor of the EventManager class, initialization.
@@ -24,12 +66,271 @@ public class EventManager implements Serializable, IManager {
      * @param eventList The pre-existing event list from gateway.
      */
     public EventManager(HashMap<String, Room> schedule, HashMap<String, Event> eventList) {
-        this.eventList = new HashMap<>();
-        this.eventList = eventList;
-        this.eventSchedule = new HashMap<>();
-        this.eventSchedule = schedule;
-        this.eventCount = eventList.size();
-        this.roomCount = eventSchedule.size();
+        this(schedule, eventList, eventList.size(), schedule.size());
+    }
+
+    /**
+     * Constructor of the EventManager class, used when the counters of the
+     * event and room IDs are stored separately from the lists (i.e. a snapshot).
+     *
+     * @param schedule   The pre-existing event schedule from gateway.
+     * @param eventList  The pre-existing event list from gateway.
+     * @param eventCount The last event ID that was given out.
+     * @param roomCount  The last room ID that was given out.
+     */
+    public EventManager(HashMap<String, Room> schedule, HashMap<String, Event> eventList,
+                        int eventCount, int roomCount) {
+        this(schedule, eventList, eventCount, roomCount, new UserRegistry());
+    }
+
+    /**
+     * Constructor of the EventManager class, used when the attendees and speakers of the
+     * events were added with the IDs of a registry of users (i.e. a snapshot).
+     *
+     * @param schedule   The pre-existing event schedule from gateway.
+     * @param eventList  The pre-existing event list from gateway.
+     * @param eventCount The last event ID that was given out.
+     * @param roomCount  The last room ID that was given out.
+     * @param users      The registry the user IDs of the events were given out by.
+     */
+    public EventManager(HashMap<String, Room> schedule, HashMap<String, Event> eventList,
+                        int eventCount, int roomCount, IUserRegistry users) {
+        this.users = users;
+        this.eventList = new ConcurrentHashMap<>(eventList);
+        this.eventSchedule = new ConcurrentHashMap<>(schedule);
+        this.eventCount = new AtomicInteger(eventCount);
+        this.roomCount = new AtomicInteger(roomCount);
+        initLocks();
+        setRoomCapacities();
+        indexUserEvents();
+    }
+
+    // Private helper function
+    // Creates the locks, which are not serialized
+    private void initLocks() {
+        this.eventLocks = new Object[STRIPES];
+        this.roomLocks = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            eventLocks[i] = new Object();
+            roomLocks[i] = new Object();
+        }
+        this.idLock = new Object();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        initLocks();
+        setRoomCapacities();
+        if (users == null) {
+            users = new UserRegistry(); // saved before the users of events were kept by ID
+        }
+    }
+
+    // Private helper function
+    // Gives every event the capacity of its room, which is not stored with the event
+    private void setRoomCapacities() {
+        for (Event event : eventList.values()) {
+            Room room = eventSchedule.get(event.getRoomID());
+            if (room != null) {
+                event.setRoomCapacity(room.getRoomCapacity());
+            }
+        }
+    }
+
+    // Private helper function
+    // Returns the lock stripe of an event or room ID
+    private static int stripe(String id) {
+        return (id.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    // Private helper function
+    // Returns the lock guarding the attendees, speakers and settings of an event
+    private Object eventLock(String eventID) {
+        return eventLocks[stripe(eventID)];
+    }
+
+    // Private helper function
+    // Returns the lock guarding the bookings of a room
+    private Object roomLock(String roomID) {
+        return roomLocks[stripe(roomID)];
+    }
+
+    /**
+     * Runs an action while holding the locks of several events, so it sees and changes them together.
+     * Other changes to these events wait until the action is done; other events are not locked.
+     * The action is entered as one change, see IJournal.beginChange, so a snapshot never splits it.
+     *
+     * @param eventIDs The IDs of the events to lock.
+     * @param action   The action to run.
+     * @param <T>      The type of the result of the action.
+     * @return The result of the action.
+     */
+    public <T> T withEventLocks(Collection<String> eventIDs, Supplier<T> action) {
+        IJournal change = beginChange();
+        try {
+            TreeSet<Integer> stripes = new TreeSet<>();
+            for (String eventID : eventIDs) {
+                stripes.add(stripe(eventID));
+            }
+            return withEventLocks(new ArrayList<>(stripes), 0, action);
+        } finally {
+            endChange(change);
+        }
+    }
+
+    // Private helper function
+    // Takes the locks of the stripes in increasing order, then runs the action
+    private <T> T withEventLocks(ArrayList<Integer> stripes, int next, Supplier<T> action) {
+        if (next == stripes.size()) {
+            return action.get();
+        }
+        synchronized (eventLocks[stripes.get(next)]) {
+            return withEventLocks(stripes, next + 1, action);
+        }
+    }
+
+    // Orders event IDs by their number, the order the events were added in
+    private static final Comparator<String> EVENT_ORDER =
+            Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder());
+
+    // Private helper function
+    // Builds the index of the events each user attends and speaks at from the event list
+    private void indexUserEvents() {
+        this.attendeeEvents = new ConcurrentHashMap<>();
+        this.speakerEvents = new ConcurrentHashMap<>();
+        for (Event event : eventList.values()) {
+            for (int userID : event.getAttendees()) {
+                indexUserEvent(attendeeEvents, users.getUsername(userID), event.getEventID());
+            }
+            for (int userID : event.getSpeakers()) {
+                indexUserEvent(speakerEvents, users.getUsername(userID), event.getEventID());
+            }
+        }
+    }
+
+    // Private helper function
+    // Adds an event to a user's events in an index
+    private void indexUserEvent(Map<String, Set<String>> index, String userID, String eventID) {
+        index.compute(userID, (user, events) -> {
+            if (events == null) {
+                events = new ConcurrentSkipListSet<>(EVENT_ORDER);
+            }
+            events.add(eventID);
+            return events;
+        });
+    }
+
+    // Private helper function
+    // Removes an event from a user's events in an index
+    private void unindexUserEvent(Map<String, Set<String>> index, String userID, String eventID) {
+        index.computeIfPresent(userID, (user, events) -> {
+            events.remove(eventID);
+            return events.isEmpty() ? null : events;
+        });
+    }
+
+    /**
+     * Returns the last event ID that was given out.
+     *
+     * @return The event ID counter.
+     */
+    public int getEventCount() {
+        return eventCount.get();
+    }
+
+    /**
+     * Returns the last room ID that was given out.
+     *
+     * @return The room ID counter.
+     */
+    public int getRoomCount() {
+        return roomCount.get();
+    }
+
+    /**
+     * Sets the journal that changes to events and rooms are recorded to.
+     *
+     * @param journal The journal to record to, null to stop recording.
+     */
+    public void setJournal(IJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Sets the registry of users that gives out the IDs attendees and speakers are stored by.
+     * The events that are already loaded are moved to the IDs of the new registry.
+     *
+     * @param users The registry of users, null to give out IDs in a registry of this EventManager.
+     */
+    public void setUserRegistry(IUserRegistry users) {
+        IUserRegistry old = this.users;
+        this.users = users == null ? new UserRegistry() : users;
+        for (Event event : eventList.values()) {
+            event.remap(old, this.users);
+        }
+        indexUserEvents();
+    }
+
+    /**
+     * Sets the handler that moves users off the waitlist of an event when a seat is freed.
+     *
+     * @param waitlistHandler The handler, null to stop promoting users.
+     */
+    public void setWaitlistHandler(IWaitlistHandler waitlistHandler) {
+        this.waitlistHandler = waitlistHandler;
+    }
+
+    // Private helper function
+    // Returns the ID of a user in the registry of users
+    private int idOf(String userID) {
+        return users.getUserID(userID);
+    }
+
+    // Private helper function
+    // Returns the usernames of user IDs, in the same order
+    private Set<String> usernames(int[] userIDs) {
+        LinkedHashSet<String> names = new LinkedHashSet<>();
+        for (int userID : userIDs) {
+            names.add(users.getUsername(userID));
+        }
+        return names;
+    }
+
+    // Private helper function
+    // Enters a change, see IJournal.beginChange, and returns the journal it was entered in
+    private IJournal beginChange() {
+        IJournal entered = journal;
+        if (entered != null) {
+            entered.beginChange();
+        }
+        return entered;
+    }
+
+    // Private helper function
+    // Leaves a change entered by beginChange
+    private static void endChange(IJournal entered) {
+        if (entered != null) {
+            entered.endChange();
+        }
+    }
+
+    // Private helper function
+    // Counts a change and records it to the journal, if there is one
+    private void record(byte type, String... fields) {
+        changes.incrementAndGet();
+        if (journal != null) {
+            journal.record(type, fields);
+        }
+    }
+
+    /**
+     * Gets the number of changes made through this EventManager, see IManager.
+     *
+     * @return The number of changes made since this EventManager was created.
+     */
+    @Override
+    public long getChangeCount() {
+        return changes.get();
     }
 
     /**
@@ -42,32 +343,36 @@ public class EventManager implements Serializable, IManager {
      * @param capacity  The capacity of the event
      * @return Event ID
      */
-    public String addEvent(String roomID, String startTime, String endTime,
+    public String addEvent(String roomID, int startTime, int endTime,
                            String eventName, Integer capacity) {
-        int checkResult = checkAvailability("-1", roomID, startTime, endTime);
-        String eCount = "-1";
-        switch (checkResult) {
-            case 0:
-                return "-2";
-            case 1:
-                this.eventCount++;
-                Room aRoom = this.eventSchedule.get(roomID);
-                eCount = Integer.toString(this.eventCount);
-                int duration = Integer.parseInt(endTime) - Integer.parseInt(startTime);
-                if (aRoom.addEvent(Integer.parseInt(startTime), eCount, duration)) {
-                    Event newEvent = new Event(eCount, roomID, startTime, endTime, eventName, capacity);
-                    this.eventList.put(eCount, newEvent);
-//                    this.eventSchedule.get(roomID).put(startTime, eCount);
-                } else {
-                    this.eventCount--;
+        IJournal change = beginChange();
+        try {
+            switch (validateEvent(roomID, startTime, endTime)) {
+                case 3:
+                    return "-3";
+                case 4:
+                    return "-2";
+            }
+            Room aRoom = this.eventSchedule.get(roomID);
+            synchronized (roomLock(roomID)) {
+                if (!aRoom.checkAvailability(startTime, endTime - startTime)) {
+                    return "-2"; // the room is not available at given time
                 }
-                break;
-            case 3:
-                return "-3";
-            case 4:
-                return "-2";
+                // IDs are given out and recorded under one lock, so the journal replays them in the same order
+                synchronized (idLock) {
+                    String eCount = Integer.toString(this.eventCount.incrementAndGet());
+                    aRoom.addEvent(startTime, eCount, endTime - startTime);
+                    record(IJournal.ADD_EVENT, roomID, Integer.toString(startTime),
+                            Integer.toString(endTime), eventName, capacity.toString());
+                    Event event = new Event(eCount, roomID, startTime, endTime, eventName, capacity);
+                    event.setRoomCapacity(aRoom.getRoomCapacity());
+                    this.eventList.put(eCount, event);
+                    return eCount;
+                }
+            }
+        } finally {
+            endChange(change);
         }
-        return eCount;
     }
 
     /**
@@ -78,14 +383,20 @@ public class EventManager implements Serializable, IManager {
      * @return Boolean of if the method ran successfully
      */
     public boolean setType(String eventID, Integer type) {
-        int checkResult = checkAvailability(eventID, "-1",
-                "-1", "-1");
-        if (checkResult == 5) {
-            Event oldEvent = eventList.get(eventID);
-            oldEvent.setType(type);
-            return true;
+        IJournal change = beginChange();
+        try {
+            synchronized (eventLock(eventID)) {
+                Event oldEvent = getEvent(eventID);
+                if (oldEvent != null) {
+                    oldEvent.setType(type);
+                    record(IJournal.SET_TYPE, eventID, type.toString());
+                    return true;
+                }
+                return false;
+            }
+        } finally {
+            endChange(change);
         }
-        return false;
     }
 
     /**
@@ -96,50 +407,42 @@ public class EventManager implements Serializable, IManager {
      * @return if the process was successful
      */
     public boolean setCapacity(String eventID, Integer capacity) {
-        int checkResult = checkAvailability(eventID, "-1",
-                "-1", "-1");
-        if (checkResult == 5) {
-            Event oldEvent = eventList.get(eventID);
-            Room room1 = eventSchedule.get(oldEvent.getRoomID());
-            int cap = room1.getRoomCapacity();
-            if (capacity <= cap) {
-                oldEvent.setCapacity(capacity);
-                return true;
+        IJournal change = beginChange();
+        try {
+            synchronized (eventLock(eventID)) {
+                Event oldEvent = getEvent(eventID);
+                if (oldEvent != null) {
+                    Room room1 = eventSchedule.get(oldEvent.getRoomID());
+                    int cap = room1.getRoomCapacity();
+                    if (capacity <= cap) {
+                        oldEvent.setCapacity(capacity);
+                        record(IJournal.SET_CAPACITY, eventID, capacity.toString());
+                        promoteWaitlist(oldEvent);
+                        return true;
+                    }
+                }
+                return false;
             }
+        } finally {
+            endChange(change);
         }
-        return false;
     }
 
     // Private helper function
-    // Checks the availability of time and the validity of inputted values
-    // 0 The room is not available at given time
-    // 1 The room is available at given time
-    // 2 The event ID is invalid
+    // Checks the validity of the inputted values of a new event
+    // The availability of the room is checked separately, when the event is added to it
+    // 1 The values are valid
     // 3 the room ID is invalid
     // 4 The start time is invalid
-    // 5 The event is in the list
-    private int checkAvailability(String eventID, String roomID,
-                                  String startTime, String endTime) {
-        int start2 = Integer.parseInt(startTime);
-        int duration = Integer.parseInt(endTime) - Integer.parseInt(startTime);
-        if (eventList.containsKey(eventID) && startTime.equals("-1") &&
-                roomID.equals("-1")) {
-            return 5;
-        }
-        if (!eventList.containsKey(eventID) && !eventID.equals("-1")) {
-            return 2;
-        }
-        if (!eventSchedule.containsKey(roomID)) {
+    private int validateEvent(String roomID, int startTime, int endTime) {
+        Room room = eventSchedule.get(roomID);
+        if (room == null) {
             return 3;
         }
-        if (!eventSchedule.get(roomID).getTimeSlot().containsKey(start2)) {
+        if (!room.hasTimeSlot(startTime) || endTime <= startTime) {
             return 4;
         }
-        if (!endTime.equals("-1") && eventSchedule.get(roomID).checkAvailability(start2, duration)) {
-            return 1;
-        } else {
-            return 0;
-        }
+        return 1;
     }
 
     /**
@@ -150,23 +453,39 @@ public class EventManager implements Serializable, IManager {
      * @return String The string to indicate the errors of the method
      */
     public String delEvent(String eventID) {
-        int checkResult = checkAvailability(eventID, "-1",
-                "-1", "-1");
-        if (checkResult == 5) {
-            // Retrieve the event entity via ID
-            Event oldEvent = eventList.get(eventID);
-            String oldRoom = oldEvent.getRoomID();
-            this.eventSchedule.get(oldRoom).removeEvent(eventID); // remove the
-            // old event time from the old event room
-
-            // Update the information in the event entity.
-            oldEvent.setEndTime("0");
-            oldEvent.setStartTime("0");
-            oldEvent.setRoomID("0");
-            this.eventList.remove(eventID);
-            return "0";
-        } else {
-            return "-1";
+        IJournal change = beginChange();
+        try {
+            synchronized (eventLock(eventID)) {
+                Event oldEvent = getEvent(eventID);
+                if (oldEvent != null) {
+                    String oldRoom = oldEvent.getRoomID();
+                    // the booking is freed and recorded under one lock, so an event added to the freed
+                    // time is journaled after this one is deleted
+                    synchronized (roomLock(oldRoom)) {
+                        this.eventSchedule.get(oldRoom).removeEvent(eventID); // remove the
+                        // old event time from the old event room
+                        record(IJournal.DEL_EVENT, eventID);
+                    }
+
+                    for (String userID : usernames(oldEvent.getAttendees())) {
+                        unindexUserEvent(attendeeEvents, userID, eventID);
+                    }
+                    for (String userID : usernames(oldEvent.getSpeakers())) {
+                        unindexUserEvent(speakerEvents, userID, eventID);
+                    }
+
+                    // Update the information in the event entity.
+                    oldEvent.setEndTime(0);
+                    oldEvent.setStartTime(0);
+                    oldEvent.setRoomID("0");
+                    this.eventList.remove(eventID);
+                    return "0";
+                } else {
+                    return "-1";
+                }
+            }
+        } finally {
+            endChange(change);
         }
     }
 
@@ -176,10 +495,57 @@ public class EventManager implements Serializable, IManager {
      *
      * @return A hashmap of full event list.
      */
-    public HashMap<String, Event> getEventList() {
+    public Map<String, Event> getEventList() {
         return eventList;
     }
 
+    /**
+     * Returns the event with the event ID, with a single lookup.
+     * Callers that read several fields of an event should look it up once here.
+     *
+     * @param eventID The event ID to look up.
+     * @return The Event, null if the event ID is invalid.
+     */
+    public Event getEvent(String eventID) {
+        return eventList.get(eventID);
+    }
+
+    /**
+     * Returns the events a user is attending, in order of event ID.
+     *
+     * @param userID The user ID to look up.
+     * @return ArrayList of the Events the user attends.
+     */
+    public ArrayList<Event> getAttendeeEvents(String userID) {
+        return getUserEvents(attendeeEvents, userID);
+    }
+
+    /**
+     * Returns the events a speaker is speaking at, in order of event ID.
+     *
+     * @param userID The user ID of the speaker to look up.
+     * @return ArrayList of the Events the speaker speaks at.
+     */
+    public ArrayList<Event> getSpeakerEvents(String userID) {
+        return getUserEvents(speakerEvents, userID);
+    }
+
+    // Private helper function
+    // Returns the Events of a user in an index
+    private ArrayList<Event> getUserEvents(Map<String, Set<String>> index, String userID) {
+        ArrayList<Event> events = new ArrayList<>();
+        Set<String> eventIDs = index.get(userID);
+        if (eventIDs != null) {
+            for (String eventID : eventIDs) {
+                Event event = eventList.get(eventID);
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+        }
+        return events;
+    }
+
     /**
      * Returns the room an event is taking place in.
      *
@@ -187,11 +553,8 @@ public class EventManager implements Serializable, IManager {
      * @return The room ID the event taking place in.
      */
     public String getRoomID(String eventID) {
-        int checkResult = checkAvailability(eventID, "-1",
-                "-1", "-1");
-        if (checkResult == 5) {
-            // Retrieve the event entity via ID
-            Event oldEvent = eventList.get(eventID);
+        Event oldEvent = getEvent(eventID);
+        if (oldEvent != null) {
             return (oldEvent.getRoomID());
         } else {
             return "0";
@@ -212,25 +575,38 @@ public class EventManager implements Serializable, IManager {
      *
      * @return The full event schedule with the rooms.
      */
-    public HashMap<String, Room> getEventSchedule() {
+    public Map<String, Room> getEventSchedule() {
         return eventSchedule;
     }
 
+    /**
+     * Returns the events booked in a room, read from the room's calendar
+     *
+     * @param roomID The room to look for the events.
+     * @return ArrayList of the event IDs in order of start time, null if invalid room ID inputted.
+     */
+    public ArrayList<String> getRoomEvents(String roomID) {
+        Room room = eventSchedule.get(roomID);
+        if (room == null) {
+            return null;
+        }
+        synchronized (roomLock(roomID)) {
+            return room.getCalendar().getEvents(Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+    }
+
     /**
      * Gets the start time of an event based on inputted event ID.
      *
      * @param eventID Th event ID wished to be used to look up.
-     * @return String of event start time of the provided event ID.
-     */
-    public String getStartTime(String eventID) {
-        int checkResult = checkAvailability(eventID, "-1",
-                "-1", "-1");
-        if (checkResult == 5) {
-            // Retrieve the event entity via ID
-            Event oldEvent = eventList.get(eventID);
+     * @return int of event start time of the provided event ID, 0 if the event ID is invalid.
+     */
+    public int getStartTime(String eventID) {
+        Event oldEvent = getEvent(eventID);
+        if (oldEvent != null) {
             return (oldEvent.getStartTime());
         } else {
-            return "0";
+            return 0;
         }
     }
 
@@ -238,17 +614,15 @@ public class EventManager implements Serializable, IManager {
      * Gets the end time of an event based on inputted event ID.
      *
      * @param eventID Th event ID wished to be used to look up.
-     * @return String of event start time of the provided event ID.
-     */
-    public String getEndTime(String eventID) {
-        int checkResult = checkAvailability(eventID, "-1",
-                "-1", "-1");
-        if (checkResult == 5) {
-            // Retrieve the event entity via ID
-            Event oldEvent = eventList.get(eventID);
+     * @return int of event end time of the provided event ID, 0 if the event ID is invalid.
+     */
+    @Override
+    public int getEndTime(String eventID) {
+        Event oldEvent = getEvent(eventID);
+        if (oldEvent != null) {
             return (oldEvent.getEndTime());
         } else {
-            return "0";
+            return 0;
         }
     }
 
@@ -260,14 +634,13 @@ public class EventManager implements Serializable, IManager {
      * @return boolean to tell if the user is already in the event.
      */
     public boolean hasAttendee(String eventID, String userID) {
-        int checkResult = checkAvailability(eventID, "-1",
-                "-1", "-1");
-        if (checkResult == 5) {
-            // Retrieve the event entity via ID
-            Event oldEvent = eventList.get(eventID);
-            return (oldEvent.hasAttendee(userID));
-        } else {
-            return false;
+        synchronized (eventLock(eventID)) {
+            Event oldEvent = getEvent(eventID);
+            if (oldEvent != null) {
+                return (oldEvent.hasAttendee(idOf(userID)));
+            } else {
+                return false;
+            }
         }
     }
 
@@ -282,14 +655,13 @@ public class EventManager implements Serializable, IManager {
      * false if the event ID is invalid
      */
     public boolean hasSpeaker(String eventID, String userID) {
-        int checkResult = checkAvailability(eventID, "-1",
-                "-1", "-1");
-        if (checkResult == 5) {
-            // Retrieve the event entity via ID
-            Event oldEvent = eventList.get(eventID);
-            return (oldEvent.hasSpeaker(userID));
-        } else {
-            return false;
+        synchronized (eventLock(eventID)) {
+            Event oldEvent = getEvent(eventID);
+            if (oldEvent != null) {
+                return (oldEvent.hasSpeaker(idOf(userID)));
+            } else {
+                return false;
+            }
         }
     }
 
@@ -297,18 +669,17 @@ public class EventManager implements Serializable, IManager {
      * Gets the list of attendee IDs from the specified event ID.
      *
      * @param eventID The event ID to look up the list of attendees
-     * @return The list of attendees in the provided event. Returns null if
+     * @return Copy of the set of the attendees in the provided event. Returns null if
      * the event ID is invalid.
      */
-    public ArrayList<String> getAttendees(String eventID) {
-        int checkResult = checkAvailability(eventID, "-1",
-                "-1", "-1");
-        if (checkResult == 5) {
-            // Retrieve the event entity via ID
-            Event oldEvent = eventList.get(eventID);
-            return (oldEvent.getAttendees());
-        } else {
-            return null;
+    public Set<String> getAttendees(String eventID) {
+        synchronized (eventLock(eventID)) {
+            Event oldEvent = getEvent(eventID);
+            if (oldEvent != null) {
+                return usernames(oldEvent.getAttendees());
+            } else {
+                return null;
+            }
         }
     }
 
@@ -319,11 +690,8 @@ public class EventManager implements Serializable, IManager {
      * @return The event name of the event, returns null if invalid event ID.
      */
     public String getEventName(String eventID) {
-        int checkResult = checkAvailability(eventID, "-1",
-                "-1", "-1");
-        if (checkResult == 5) {
-            // Retrieve the event entity via ID
-            Event oldEvent = eventList.get(eventID);
+        Event oldEvent = getEvent(eventID);
+        if (oldEvent != null) {
             return (oldEvent.getEventName());
         } else {
             return null;
@@ -334,18 +702,17 @@ public class EventManager implements Serializable, IManager {
      * Gets the list of the speaker of the inputted event ID.
      *
      * @param eventID The event that user wants to get the speaker list.
-     * @return ArrayList of the list of speakers from the event. Returns null
+     * @return Copy of the set of the speakers from the event. Returns null
      * if invalid event ID inputted.
      */
-    public ArrayList<String> getSpeakers(String eventID) {
-        int checkResult = checkAvailability(eventID, "-1",
-                "-1", "-1");
-        if (checkResult == 5) {
-            // Retrieve the event entity via ID
-            Event oldEvent = eventList.get(eventID);
-            return (oldEvent.getSpeakers());
-        } else {
-            return null;
+    public Set<String> getSpeakers(String eventID) {
+        synchronized (eventLock(eventID)) {
+            Event oldEvent = getEvent(eventID);
+            if (oldEvent != null) {
+                return usernames(oldEvent.getSpeakers());
+            } else {
+                return null;
+            }
         }
     }
 
@@ -368,22 +735,60 @@ public class EventManager implements Serializable, IManager {
      * @return Boolean indicating whether the addition was successful.
      */
     public boolean addAttendee(String userID, String eventID) {
-        int checkResult = checkAvailability(eventID, "-1",
-                "-1", "-1");
-        if (checkResult == 5) {
-            // Retrieve the event entity via ID
-            if (hasAttendee(eventID, userID)) {
-                return false;
-            }
-            Event oldEvent = eventList.get(eventID);
-            if (oldEvent.isFull()) {
+        return reserveSeat(eventID) && confirmAttendee(userID, eventID);
+    }
+
+    /**
+     * Reserves a seat in an event for a user that is signing up, without taking the lock of the event.
+     * The seat must later be taken by confirmAttendee or given back by releaseSeat.
+     *
+     * @param eventID The event ID of the event.
+     * @return Boolean indicating whether a seat was reserved, false if the event is full or invalid.
+     */
+    public boolean reserveSeat(String eventID) {
+        Event oldEvent = getEvent(eventID);
+        return oldEvent != null && oldEvent.reserveSeat();
+    }
+
+    /**
+     * Gives back a seat reserved by reserveSeat.
+     *
+     * @param eventID The event ID of the event.
+     */
+    public void releaseSeat(String eventID) {
+        Event oldEvent = getEvent(eventID);
+        if (oldEvent != null) {
+            oldEvent.releaseSeat();
+        }
+    }
+
+    /**
+     * Adds an attendee to the event in a seat reserved by reserveSeat.
+     * The reservation is given back if the attendee cannot be added.
+     *
+     * @param userID  The user ID of the user that wishes to join the event.
+     * @param eventID The event ID of the event that the user wishes to join.
+     * @return Boolean indicating whether the addition was successful.
+     */
+    public boolean confirmAttendee(String userID, String eventID) {
+        IJournal change = beginChange();
+        try {
+            synchronized (eventLock(eventID)) {
+                Event oldEvent = getEvent(eventID);
+                if (oldEvent != null) {
+                    // Retrieve the event entity via ID
+                    int attendee = idOf(userID);
+                    if (oldEvent.confirmAttendee(attendee)) {
+                        oldEvent.getWaitlist().remove(userID);
+                        indexUserEvent(attendeeEvents, users.getUsername(attendee), oldEvent.getEventID());
+                        record(IJournal.ADD_ATTENDEE, userID, eventID);
+                        return true;
+                    }
+                }
                 return false;
-            } else {
-                oldEvent.addAttendee(userID);
-                return true;
             }
-        } else {
-            return false;
+        } finally {
+            endChange(change);
         }
     }
 
@@ -397,30 +802,36 @@ public class EventManager implements Serializable, IManager {
      * @return Boolean indicating whether the addition was successful.
      */
     public boolean addSpeaker(String userID, String eventID) {
-        int checkResult = checkAvailability(eventID, "-1",
-                "-1", "-1");
-        if (checkResult == 5) {
-            // Retrieve the event entity via ID
-            if (hasSpeaker(eventID, userID)) {
-                return false;
-            }
-            Event oldEvent = eventList.get(eventID);
-            if (oldEvent.getSpeakerCount() >= 1 && oldEvent.getType() != 2) { // limited to 1 speaker: phase1
-                return false;
-            } else {
-                oldEvent.addSpeaker(userID);
-                return true;
+        IJournal change = beginChange();
+        try {
+            synchronized (eventLock(eventID)) {
+                Event oldEvent = getEvent(eventID);
+                if (oldEvent != null) {
+                    // Retrieve the event entity via ID
+                    int speaker = idOf(userID);
+                    if (oldEvent.hasSpeaker(speaker)) {
+                        return false;
+                    }
+                    if (oldEvent.getSpeakerCount() >= 1 && oldEvent.getType() != 2) { // limited to 1 speaker: phase1
+                        return false;
+                    } else {
+                        oldEvent.addSpeaker(speaker);
+                        indexUserEvent(speakerEvents, users.getUsername(speaker), oldEvent.getEventID());
+                        record(IJournal.ADD_SPEAKER, userID, eventID);
+                        return true;
+                    }
+                } else {
+                    return false;
+                }
             }
-        } else {
-            return false;
+        } finally {
+            endChange(change);
         }
     }
 
     public int getType(String eventID) {
-        int checkResult = checkAvailability(eventID, "-1",
-                "-1", "-1");
-        if (checkResult == 5) {
-            Event oldEvent = eventList.get(eventID);
+        Event oldEvent = getEvent(eventID);
+        if (oldEvent != null) {
             return oldEvent.getType();
         }
         return -1;
@@ -434,13 +845,103 @@ public class EventManager implements Serializable, IManager {
      * @param eventID The event ID that the user wishes to leave.
      */
     public void removeAttendee(String userID, String eventID) {
-        int checkResult = checkAvailability(eventID, "-1",
-                "-1", "-1");
-        if (checkResult == 5) {
-            // Retrieve the event entity via ID
-            Event oldEvent = eventList.get(eventID);
-            if (oldEvent.hasAttendee(userID)) {
-                oldEvent.removeAttendee(userID);
+        IJournal change = beginChange();
+        try {
+            synchronized (eventLock(eventID)) {
+                Event oldEvent = getEvent(eventID);
+                if (oldEvent != null) {
+                    if (oldEvent.hasAttendee(idOf(userID))) {
+                        oldEvent.removeAttendee(idOf(userID));
+                        unindexUserEvent(attendeeEvents, userID, oldEvent.getEventID());
+                        record(IJournal.REMOVE_ATTENDEE, userID, eventID);
+                        promoteWaitlist(oldEvent);
+                    }
+                }
+            }
+        } finally {
+            endChange(change);
+        }
+    }
+
+    /**
+     * Adds a user to the end of the waitlist of an event, VIPs are kept ahead of other users.
+     *
+     * @param userID  The user ID of the user that wishes to wait for a seat.
+     * @param eventID The event ID of the event.
+     * @param vip     true if the user is a VIP.
+     * @return Boolean indicating whether the user was added, false if the event is invalid, the
+     * user is already attending or waiting, or the waitlist handler finds the user not eligible.
+     */
+    public boolean joinWaitlist(String userID, String eventID, boolean vip) {
+        IJournal change = beginChange();
+        try {
+            synchronized (eventLock(eventID)) {
+                Event oldEvent = getEvent(eventID);
+                if (oldEvent == null || oldEvent.hasAttendee(idOf(userID))
+                        || (waitlistHandler != null && !waitlistHandler.isEligible(userID, eventID))
+                        || !oldEvent.getWaitlist().add(users.canonical(userID), vip)) {
+                    return false;
+                }
+                record(IJournal.JOIN_WAITLIST, userID, eventID, Boolean.toString(vip));
+                // a seat may have been freed while nobody was waiting
+                promoteWaitlist(oldEvent);
+                return true;
+            }
+        } finally {
+            endChange(change);
+        }
+    }
+
+    /**
+     * Removes a user from the waitlist of an event.
+     *
+     * @param userID  The user ID of the user that no longer wishes to wait.
+     * @param eventID The event ID of the event.
+     */
+    public void leaveWaitlist(String userID, String eventID) {
+        IJournal change = beginChange();
+        try {
+            synchronized (eventLock(eventID)) {
+                Event oldEvent = getEvent(eventID);
+                if (oldEvent != null && oldEvent.getWaitlist().remove(userID)) {
+                    record(IJournal.LEAVE_WAITLIST, userID, eventID);
+                }
+            }
+        } finally {
+            endChange(change);
+        }
+    }
+
+    /**
+     * Checks if a user is on the waitlist of an event.
+     *
+     * @param eventID The event ID to be checked.
+     * @param userID  The user ID to be checked.
+     * @return boolean to tell if the user is waiting for a seat in the event.
+     */
+    public boolean isWaitlisted(String eventID, String userID) {
+        synchronized (eventLock(eventID)) {
+            Event oldEvent = getEvent(eventID);
+            return oldEvent != null && oldEvent.getWaitlist().contains(userID);
+        }
+    }
+
+    // Private helper function
+    // Fills the free seats of an event from its waitlist, the caller holds the lock of the event
+    // Each promotion takes O(1); users the handler skips are taken off the waitlist
+    private void promoteWaitlist(Event oldEvent) {
+        if (waitlistHandler == null) {
+            return;
+        }
+        String eventID = oldEvent.getEventID();
+        while (oldEvent.getWaitlist().size() > 0 && oldEvent.reserveSeat()) {
+            String userID = oldEvent.getWaitlist().poll();
+            record(IJournal.LEAVE_WAITLIST, userID, eventID);
+            if (!waitlistHandler.promote(userID, eventID)) {
+                oldEvent.releaseSeat();
+            } else if (oldEvent.confirmAttendee(idOf(userID))) {
+                indexUserEvent(attendeeEvents, userID, eventID);
+                record(IJournal.ADD_ATTENDEE, userID, eventID);
             }
         }
     }
@@ -452,11 +953,18 @@ public class EventManager implements Serializable, IManager {
      * @return String the RoomID of the new room
      */
     public String addRoom(int capacity) {
-        this.roomCount++;
-        String roomStr = Integer.toString(roomCount);
-        Room temp = new Room(roomStr, capacity);
-        eventSchedule.put(roomStr, temp);
-        return roomStr;
+        IJournal change = beginChange();
+        try {
+            synchronized (idLock) {
+                String roomStr = Integer.toString(roomCount.incrementAndGet());
+                Room temp = new Room(roomStr, capacity);
+                record(IJournal.ADD_ROOM, Integer.toString(capacity));
+                eventSchedule.put(roomStr, temp);
+                return roomStr;
+            }
+        } finally {
+            endChange(change);
+        }
     }
 
     /**
@@ -466,11 +974,8 @@ public class EventManager implements Serializable, IManager {
      * @return boolean indicating if event is full
      */
     public boolean isFull(String eventID) {
-        int checkResult = checkAvailability(eventID, "-1",
-                "-1", "-1");
-        if (checkResult == 5) {
-            // Retrieve the event entity via ID
-            Event oldEvent = eventList.get(eventID);
+        Event oldEvent = getEvent(eventID);
+        if (oldEvent != null) {
             return (oldEvent.isFull());
         } else {
             return false;
@@ -2,18 +2,20 @@ package event;
 
 
 import java.io.Serializable;
-import java.util.HashMap;
 
 /**
  * The Room class contains features of the Room entity
  *
+ * The bookings of the room are kept in a RoomCalendar, so an event can start and end at any instant and
+ * conflicts are found in O(log n) of the number of events in the room.
+ *
  * @author Zihao Sheng
- * @version 1.1
+ * @version 1.2
  */
 public class Room implements Serializable {
     private String roomID;
     private int roomCapacity;
-    private HashMap<Integer, String> timeSlot;
+    private RoomCalendar calendar;
 
 
     /**
@@ -25,8 +27,7 @@ public class Room implements Serializable {
     public Room(String roomID, int roomCapacity) {
         this.roomID = roomID;
         this.roomCapacity = roomCapacity;
-        this.timeSlot = new HashMap<>();
-        clearTimeSlot();
+        this.calendar = new RoomCalendar();
     }
 
     /**
@@ -48,12 +49,22 @@ public class Room implements Serializable {
     }
 
     /**
-     * Getter for the timeslot of the room.
+     * Getter for the calendar of the room, for free slot and range searches.
      *
-     * @return int roomCapacity.
+     * @return RoomCalendar of the room.
      */
-    public HashMap<Integer, String> getTimeSlot() {
-        return timeSlot;
+    public RoomCalendar getCalendar() {
+        return calendar;
+    }
+
+    /**
+     * Checks whether an event can start at a time.
+     *
+     * @param time The time to check.
+     * @return true if the time is not negative.
+     */
+    public boolean hasTimeSlot(int time) {
+        return time >= 0;
     }
 
     /**
@@ -65,75 +76,46 @@ public class Room implements Serializable {
     }
 
 
-
     /**
-     * Setter for the event in a certain time slot.
-     * Just a simple method, shouldn't be used directly.
-     * Please use the addEvent and removeEvent method.
+     * Add a event to the calendar. Will return false if the event has no length or overlaps another event.
      *
-     * @param time    The time to set the event.
-     * @param eventID The ID of the event.
-     * @return A boolean which determines the event is set of not.
+     * @param time        The beginning time of the event.
+     * @param eventID     The ID of the event.
+     * @param lastingTime The lasting time of the event.
+     * @return A boolean which determines whether the event is added of not.
      */
-    public boolean setEvent(int time, String eventID) {
-        if (timeSlot.containsKey(time)) {
-            timeSlot.put(time, eventID);
-            return true;
-        } else {
-            return false;
-        }
+    public boolean addEvent(int time, String eventID, int lastingTime) {
+        return calendar.book(time, (long) time + lastingTime, eventID);
     }
 
     /**
-     * Add a event to the timeslot. Will return false if the end time is larger than 17 or the time slot is already
-     * occupied.
+     * Move an event to another time in the calendar. The event stays where it was if the new time is taken.
      *
-     * @param time        The beginning time of the event.
+     * @param time        The new beginning time of the event.
      * @param eventID     The ID of the event.
      * @param lastingTime The lasting time of the event.
-     * @return A boolean which determines whether the event is added of not.
+     * @return A boolean which determines whether the event is moved or not.
      */
-    public boolean addEvent(int time, String eventID, int lastingTime) {
-        if ((time + lastingTime - 1) > 17) {
-            return false;
-        } else {
-            for (int i = 0; i < lastingTime; i++) {
-                if (!timeSlot.get(i + time).equals("0")) {
-                    return false;
-                }
-            }
-            for (int i = 0; i < lastingTime; i++) {
-                setEvent(i + time, eventID);
-            }
-            return true;
-        }
+    public boolean rescheduleEvent(int time, String eventID, int lastingTime) {
+        return calendar.reschedule(eventID, time, (long) time + lastingTime);
     }
 
     /**
-     * Remove an event from the whole time slot.
+     * Remove an event from the calendar.
      *
      * @param eventID The ID of the event to remove
-     * @return return true if the event is removed, return false if there is no such event in the time slot.
+     * @return return true if the event is removed, return false if there is no such event in the calendar.
      */
     public boolean removeEvent(String eventID) {
-        boolean s = false;
-        for (int i = 9; i <= 17; i++) {
-            if (timeSlot.get(i).equals(eventID)) {
-                setEvent(i, "0");
-                s = true;
-            }
-        }
-        return s;
+        return calendar.remove(eventID);
     }
 
 
     /**
-     * Clear's timeslot by mapping it to 0
+     * Clear's the calendar of every event
      */
     public void clearTimeSlot() {
-        for (int i = 9; i <= 17; i++) {
-            timeSlot.put(i, "0");
-        }
+        calendar.clear();
     }
 
 
@@ -147,12 +129,6 @@ public class Room implements Serializable {
      * @return true if and only if that time slot is available
      */
     public boolean checkAvailability(int time, int lastingTime) {
-        for (int i = 0; i < lastingTime; i++) {
-            if (!timeSlot.get(i + time).equals("0")) {
-                return false;
-            }
-        }
-        return true;
+        return calendar.isFree(time, (long) time + lastingTime);
     }
 }
-
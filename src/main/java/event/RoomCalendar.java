@@ -0,0 +1,186 @@
+package event;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The RoomCalendar class holds the bookings of a room as intervals [start, end) of arbitrary instants
+ *
+ * The bookings never overlap, so they are kept in a TreeMap sorted by start. A conflict can only be with
+ * the booking starting at or before the new start or the first booking after it, which makes conflict
+ * checks O(log n). Free slot and range searches start from the same lookup and only walk the bookings
+ * inside the searched range. The start of each event's booking is also indexed by event ID, so removing
+ * or moving an event goes straight to its own booking.
+ *
+ * @version 1.0
+ */
+public class RoomCalendar implements Serializable {
+    private TreeMap<Long, Booking> bookings;
+    private HashMap<String, Long> eventStarts;
+
+    /**
+     * Constructor for RoomCalendar, initializing an empty calendar
+     */
+    public RoomCalendar() {
+        this.bookings = new TreeMap<>();
+        this.eventStarts = new HashMap<>();
+    }
+
+    /**
+     * Checks whether the interval [start, end) is free.
+     *
+     * @param start The first instant of the interval.
+     * @param end   The instant the interval ends at, not included.
+     * @return true if no booking overlaps the interval, false if it does or the interval is empty.
+     */
+    public boolean isFree(long start, long end) {
+        if (end <= start) {
+            return false;
+        }
+        Map.Entry<Long, Booking> before = bookings.floorEntry(start);
+        if (before != null && before.getValue().end > start) {
+            return false;
+        }
+        Long after = bookings.higherKey(start);
+        return after == null || after >= end;
+    }
+
+    /**
+     * Books the interval [start, end) for an event if it is free.
+     *
+     * @param start   The first instant of the event.
+     * @param end     The instant the event ends at, not included.
+     * @param eventID The ID of the event.
+     * @return true if the event is booked, false if the interval is not free.
+     */
+    public boolean book(long start, long end, String eventID) {
+        if (!isFree(start, end)) {
+            return false;
+        }
+        bookings.put(start, new Booking(end, eventID));
+        eventStarts.put(eventID, start);
+        return true;
+    }
+
+    /**
+     * Removes the booking of an event.
+     *
+     * @param eventID The ID of the event.
+     * @return true if the event is removed, false if it has no booking.
+     */
+    public boolean remove(String eventID) {
+        Long start = eventStarts.remove(eventID);
+        if (start == null) {
+            return false;
+        }
+        bookings.remove(start);
+        return true;
+    }
+
+    /**
+     * Moves the booking of an event to the interval [start, end).
+     * The event keeps its old booking if the new interval is not free.
+     *
+     * @param eventID The ID of the event.
+     * @param start   The new first instant of the event.
+     * @param end     The new instant the event ends at, not included.
+     * @return true if the event is moved, false if it has no booking or the interval is not free.
+     */
+    public boolean reschedule(String eventID, long start, long end) {
+        Long oldStart = eventStarts.get(eventID);
+        if (oldStart == null) {
+            return false;
+        }
+        Booking old = bookings.remove(oldStart);
+        if (book(start, end, eventID)) {
+            return true;
+        }
+        bookings.put(oldStart, old);
+        eventStarts.put(eventID, oldStart);
+        return false;
+    }
+
+    /**
+     * Getter for the start of an event's booking.
+     *
+     * @param eventID The ID of the event.
+     * @return The first instant of the event, -1 if it has no booking.
+     */
+    public long getStart(String eventID) {
+        Long start = eventStarts.get(eventID);
+        return start == null ? -1 : start;
+    }
+
+    /**
+     * Finds the earliest free interval of a given length inside [from, until).
+     *
+     * @param from   The earliest instant the interval can start at.
+     * @param until  The instant the interval must end by.
+     * @param length The length of the interval.
+     * @return The start of the earliest free interval, -1 if there is none.
+     */
+    public long findFreeSlot(long from, long until, long length) {
+        long start = from;
+        Map.Entry<Long, Booking> before = bookings.floorEntry(from);
+        if (before != null && before.getValue().end > start) {
+            start = before.getValue().end;
+        }
+        for (Map.Entry<Long, Booking> booking : bookings.tailMap(start, true).entrySet()) {
+            if (booking.getKey() - start >= length || booking.getKey() >= until) {
+                break;
+            }
+            start = booking.getValue().end;
+        }
+        if (start + length <= until) {
+            return start;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the events that overlap the interval [from, to), in order of start.
+     *
+     * @param from The first instant of the interval.
+     * @param to   The instant the interval ends at, not included.
+     * @return ArrayList of the IDs of the events.
+     */
+    public ArrayList<String> getEvents(long from, long to) {
+        ArrayList<String> events = new ArrayList<>();
+        if (to <= from) {
+            return events;
+        }
+        long first = from;
+        Map.Entry<Long, Booking> before = bookings.floorEntry(from);
+        if (before != null && before.getValue().end > from) {
+            first = before.getKey();
+        }
+        for (Booking booking : bookings.subMap(first, true, to, false).values()) {
+            events.add(booking.eventID);
+        }
+        return events;
+    }
+
+    /**
+     * Removes every booking.
+     */
+    public void clear() {
+        bookings.clear();
+        eventStarts.clear();
+    }
+
+    /**
+     * The end instant and the event of one booking, keyed by its start in the calendar.
+     */
+    private static class Booking implements Serializable {
+        private final long end;
+        private final String eventID;
+
+        private Booking(long end, String eventID) {
+            this.end = end;
+            this.eventID = eventID;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package event;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The SeatCounter class counts the seats of an Event that are taken, without locking.
+ *
+ * A signup first reserves a seat, then confirms it once the attendee is added, or releases it if the signup
+ * fails. The confirmed and reserved counts share one AtomicLong (confirmed in the high 32 bits, reserved in
+ * the low 32 bits), so a reservation checks both against the capacity and takes a seat in a single
+ * compare-and-set. Two signups can never take the last seat together, and signups to a full event are
+ * turned away without waiting on a lock.
+ *
+ * @version 1.0
+ */
+public class SeatCounter {
+
+    private static final long CONFIRMED = 1L << 32;
+    private static final long RESERVED = 1L;
+
+    private final AtomicLong seats;
+    private volatile int capacity;
+
+    /**
+     * Constructor of the SeatCounter class.
+     *
+     * @param capacity  The number of seats.
+     * @param confirmed The number of seats already taken by attendees.
+     */
+    public SeatCounter(int capacity, int confirmed) {
+        this.capacity = capacity;
+        this.seats = new AtomicLong(confirmed * CONFIRMED);
+    }
+
+    /**
+     * Reserves a seat if one is free.
+     *
+     * @return true if a seat is reserved, false if every seat is confirmed or reserved.
+     */
+    public boolean reserve() {
+        while (true) {
+            long current = seats.get();
+            if (confirmed(current) + reserved(current) >= capacity) {
+                return false;
+            }
+            if (seats.compareAndSet(current, current + RESERVED)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Turns a reserved seat into a confirmed seat.
+     */
+    public void confirm() {
+        seats.addAndGet(CONFIRMED - RESERVED);
+    }
+
+    /**
+     * Gives back a reserved seat.
+     */
+    public void release() {
+        seats.addAndGet(-RESERVED);
+    }
+
+    /**
+     * Counts a confirmed seat without a reservation, even if it is over capacity (i.e. a saved attendee).
+     */
+    public void add() {
+        seats.addAndGet(CONFIRMED);
+    }
+
+    /**
+     * Gives back a confirmed seat.
+     */
+    public void remove() {
+        seats.addAndGet(-CONFIRMED);
+    }
+
+    /**
+     * Sets the number of seats. Seats that are already taken are kept.
+     *
+     * @param capacity The new number of seats.
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns whether every seat is confirmed or reserved.
+     *
+     * @return true if no seat can be reserved.
+     */
+    public boolean isFull() {
+        long current = seats.get();
+        return confirmed(current) + reserved(current) >= capacity;
+    }
+
+    /**
+     * Gets the number of confirmed seats.
+     *
+     * @return int of the confirmed seats.
+     */
+    public int getConfirmed() {
+        return confirmed(seats.get());
+    }
+
+    /**
+     * Gets the number of reserved seats that are not confirmed yet.
+     *
+     * @return int of the reserved seats.
+     */
+    public int getReserved() {
+        return reserved(seats.get());
+    }
+
+    private static int confirmed(long seats) {
+        return (int) (seats >>> 32);
+    }
+
+    private static int reserved(long seats) {
+        return (int) seats;
+    }
+}
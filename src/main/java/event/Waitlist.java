@@ -0,0 +1,109 @@
+package event;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * The Waitlist class holds the users waiting for a seat in a full Event, first come first served,
+ * with VIPs ahead of every other user.
+ *
+ * Each tier is an insertion-ordered hash set, so joining, leaving and taking the next user are O(1).
+ *
+ * @version 1.0
+ */
+public class Waitlist implements Serializable {
+
+    private LinkedHashSet<String> vips;
+    private LinkedHashSet<String> attendees;
+
+    /**
+     * Constructor of the Waitlist class, initializes an empty waitlist.
+     */
+    public Waitlist() {
+        this.vips = new LinkedHashSet<>();
+        this.attendees = new LinkedHashSet<>();
+    }
+
+    /**
+     * Adds a user to the end of their tier.
+     *
+     * @param userID The user ID.
+     * @param vip    true if the user is a VIP.
+     * @return true if the user is added, false if they are already waiting.
+     */
+    public boolean add(String userID, boolean vip) {
+        if (contains(userID)) {
+            return false;
+        }
+        return vip ? vips.add(userID) : attendees.add(userID);
+    }
+
+    /**
+     * Removes a user from the waitlist.
+     *
+     * @param userID The user ID.
+     * @return true if the user was waiting.
+     */
+    public boolean remove(String userID) {
+        return vips.remove(userID) || attendees.remove(userID);
+    }
+
+    /**
+     * Checks if a user is waiting.
+     *
+     * @param userID The user ID.
+     * @return true if the user is on the waitlist.
+     */
+    public boolean contains(String userID) {
+        return vips.contains(userID) || attendees.contains(userID);
+    }
+
+    /**
+     * Removes and returns the user who has waited the longest, VIPs first.
+     *
+     * @return The user ID, null if nobody is waiting.
+     */
+    public String poll() {
+        String next = poll(vips);
+        return next != null ? next : poll(attendees);
+    }
+
+    private static String poll(LinkedHashSet<String> tier) {
+        Iterator<String> first = tier.iterator();
+        if (!first.hasNext()) {
+            return null;
+        }
+        String userID = first.next();
+        first.remove();
+        return userID;
+    }
+
+    /**
+     * Gets the VIPs that are waiting, in order.
+     *
+     * @return ArrayList of the user IDs.
+     */
+    public ArrayList<String> getVIPs() {
+        return new ArrayList<>(vips);
+    }
+
+    /**
+     * Gets the users that are waiting and are not VIPs, in order.
+     *
+     * @return ArrayList of the user IDs.
+     */
+    public ArrayList<String> getAttendees() {
+        return new ArrayList<>(attendees);
+    }
+
+    /**
+     * Gets the number of users waiting.
+     *
+     * @return int of the users waiting.
+     */
+    public int size() {
+        return vips.size() + attendees.size();
+    }
+}
@@ -0,0 +1,876 @@
+package gateway;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import event.Event;
+import event.EventManager;
+import event.Room;
+import interfaces.IMessageSource;
+import message.Message;
+import message.MessageManager;
+import message.MessageSegment;
+import user.Attendee;
+import user.Organizer;
+import user.Speaker;
+import user.SpeakerManager;
+import user.User;
+import user.UserManager;
+import user.VIP;
+import util.UserRegistry;
+
+/**
+ * The BinarySnapshot Class writes and reads the managers in a compact, versioned binary format.
+ * Snapshots are read through a MappedByteBuffer, so opening one does not copy the file onto the heap.
+ *
+ * Every snapshot file starts with [int MAGIC][int VERSION][byte kind] and an interned string table:
+ * [int count][int offsets, count + 1 of them][UTF-8 bytes]. Usernames, IDs and times are stored once in
+ * the table and referred to everywhere else by their int index (-1 for null). Strings are only decoded
+ * the first time they are looked up. Times are stored as plain ints. Each user is stored with its position
+ * in the order users were created. Each event is stored with its attendees, speakers and the two tiers of
+ * its waitlist.
+ *
+ * Messages are stored by MessageSegment. The message snapshot is the manifest of the segments:
+ * [int reserved ID][int sealed count]([int first ID][int end ID][long opened][long sealed])* followed by
+ * the request index and then [int first ID][long opened] and the messages of the active segment. The request
+ * index is [int pending count]([int id][int sender])* [int accepted count]([int id][int sender])*, so the
+ * requests do not have to be found by reading every message header. The reserved ID is the end of the block of
+ * message IDs reserved when the snapshot was encoded, so IDs given out after it are not given out again.
+ * Each sealed segment is stored once in its own segment file next to it, see segmentFile, which holds
+ * only the messages of the segment.
+ * Messages are stored as one fixed-width header per message:
+ * [int id][int sender][byte flags][int recipient count][int first recipient][int body offset],
+ * followed by the pool of recipient indexes and the length-prefixed message bodies. A broadcast message
+ * has no recipients and stores its membership cut-off in place of its recipient count and the index of its
+ * recipient group in place of its first recipient.
+ *
+ * @version 1.0
+ */
+public class BinarySnapshot {
+
+    private static final int MAGIC = 0x54434146; // "TCAF"
+    private static final int VERSION = 6;
+    private static final byte USERS = 1;
+    private static final byte EVENTS = 2;
+    private static final byte MESSAGES = 3;
+    private static final byte SEGMENT = 4;
+
+    private static final byte ATTENDEE = 0;
+    private static final byte ORGANIZER = 1;
+    private static final byte VIP_USER = 2;
+    private static final byte SPEAKER = 3;
+
+    private static final byte IS_REQUEST = 1;
+    private static final byte IS_ACCEPTED = 2;
+    private static final byte IS_BROADCAST = 4;
+    private static final int MESSAGE_HEADER = 21;
+    private static final String TEMP = ".tmp";
+
+    /**
+     * Constructor of the BinarySnapshot Class.
+     */
+    public BinarySnapshot() {}
+
+    /**
+     * Writes every User, including Speakers, to a snapshot file.
+     *
+     * @param filename the file to write to
+     * @param data the UserManager to be written
+     */
+    public void writeUsers(String filename, UserManager data) {
+        writeFile(filename, encodeUsers(data));
+    }
+
+    /**
+     * Encodes every User, including Speakers, into the bytes of a snapshot file.
+     * The SpeakerManager is rebuilt from the Speakers in this file, see readSpeakers.
+     *
+     * @param data the UserManager to be encoded
+     * @return the bytes of the snapshot file, null if it could not be encoded
+     */
+    public byte[] encodeUsers(UserManager data) {
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(data.getUserMap().size());
+            for (User user : data.getUserMap().values()) {
+                out.writeByte(userKind(user));
+                out.writeInt(user.getSequence());
+                out.writeInt(strings.index(user.getName()));
+                out.writeInt(strings.index(user.getUsername()));
+                out.writeInt(strings.index(user.getPassword()));
+                ArrayList<String> contacts = data.getUserContactList(user.getUsername());
+                out.writeInt(contacts.size());
+                for (String contact : contacts) {
+                    out.writeInt(strings.index(contact));
+                }
+                writeSchedule(out, strings, user.getEntireSchedule());
+                if (user instanceof Speaker) {
+                    writeSchedule(out, strings, ((Speaker) user).getEventsToHost());
+                }
+            }
+            return image(USERS, strings, bytes);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Reads a users snapshot file into a UserManager.
+     *
+     * @param filename the file to read from
+     * @return the UserManager stored in the file, null if it could not be read
+     */
+    public UserManager readUsers(String filename) {
+        Reader in = open(filename, USERS);
+        if (in == null) {
+            return null;
+        }
+        HashMap<String, User> userMap = new HashMap<>();
+        HashMap<String, Organizer> organizerMap = new HashMap<>();
+        HashMap<String, Attendee> attendeeMap = new HashMap<>();
+        HashMap<String, VIP> VIPMap = new HashMap<>();
+        HashMap<String, ArrayList<String>> contactLists = new HashMap<>();
+        int count = in.nextInt();
+        for (int i = 0; i < count; i++) {
+            byte kind = in.buffer.get();
+            int sequence = in.nextInt();
+            String name = in.nextString();
+            String username = in.nextString();
+            String password = in.nextString();
+            User user;
+            switch (kind) {
+                case ORGANIZER:
+                    Organizer organizer = new Organizer(name, username, password);
+                    organizerMap.put(username, organizer);
+                    user = organizer;
+                    break;
+                case VIP_USER:
+                    VIP vip = new VIP(name, username, password);
+                    VIPMap.put(username, vip);
+                    user = vip;
+                    break;
+                case SPEAKER:
+                    user = new Speaker(name, username, password);
+                    break;
+                default:
+                    Attendee attendee = new Attendee(name, username, password);
+                    attendeeMap.put(username, attendee);
+                    user = attendee;
+                    break;
+            }
+            ArrayList<String> contacts = new ArrayList<>();
+            int contactCount = in.nextInt();
+            for (int j = 0; j < contactCount; j++) {
+                contacts.add(in.nextString());
+            }
+            contactLists.put(username, contacts);
+            user.setSequence(sequence);
+            user.setSchedule(readSchedule(in));
+            if (user instanceof Speaker) {
+                for (Map.Entry<Integer, Integer> host : readSchedule(in).entrySet()) {
+                    ((Speaker) user).addEventHost(host.getKey(), host.getValue());
+                }
+            }
+            userMap.put(username, user);
+        }
+        UserManager users = new UserManager(userMap, organizerMap, attendeeMap, VIPMap);
+        // contacts are kept by user ID, which the UserManager gives out
+        for (Map.Entry<String, ArrayList<String>> contacts : contactLists.entrySet()) {
+            users.setUserContacts(contacts.getKey(), contacts.getValue());
+        }
+        return users;
+    }
+
+    /**
+     * Rebuilds the SpeakerManager from the Speakers of a UserManager,
+     * so the Speakers are the same objects in both managers.
+     *
+     * @param users the UserManager read from the users snapshot
+     * @return the SpeakerManager of the Speakers in users
+     */
+    public SpeakerManager readSpeakers(UserManager users) {
+        HashMap<String, Speaker> speakerMap = new HashMap<>();
+        for (User user : users.getUserMap().values()) {
+            if (user instanceof Speaker) {
+                speakerMap.put(user.getUsername(), (Speaker) user);
+            }
+        }
+        return new SpeakerManager(speakerMap);
+    }
+
+    /**
+     * Writes the rooms and events to a snapshot file.
+     *
+     * @param filename the file to write to
+     * @param data the EventManager to be written
+     */
+    public void writeEvents(String filename, EventManager data) {
+        writeFile(filename, encodeEvents(data));
+    }
+
+    /**
+     * Encodes the rooms and events into the bytes of a snapshot file.
+     *
+     * @param data the EventManager to be encoded
+     * @return the bytes of the snapshot file, null if it could not be encoded
+     */
+    public byte[] encodeEvents(EventManager data) {
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(data.getEventCount());
+            out.writeInt(data.getRoomCount());
+            out.writeInt(data.getEventSchedule().size());
+            for (Room room : data.getEventSchedule().values()) {
+                out.writeInt(strings.index(room.getRoomID()));
+                out.writeInt(room.getRoomCapacity());
+            }
+            out.writeInt(data.getEventList().size());
+            for (Event event : data.getEventList().values()) {
+                out.writeInt(strings.index(event.getEventID()));
+                out.writeInt(strings.index(event.getRoomID()));
+                out.writeInt(event.getStartTime());
+                out.writeInt(event.getEndTime());
+                out.writeInt(strings.index(event.getEventName()));
+                out.writeInt(event.getCapacity());
+                out.writeInt(event.getType());
+                Set<String> attendees = data.getAttendees(event.getEventID());
+                out.writeInt(attendees.size());
+                for (String attendee : attendees) {
+                    out.writeInt(strings.index(attendee));
+                }
+                Set<String> speakers = data.getSpeakers(event.getEventID());
+                out.writeInt(speakers.size());
+                for (String speaker : speakers) {
+                    out.writeInt(strings.index(speaker));
+                }
+                ArrayList<String> vips = event.getWaitlist().getVIPs();
+                out.writeInt(vips.size());
+                for (String vip : vips) {
+                    out.writeInt(strings.index(vip));
+                }
+                ArrayList<String> waiting = event.getWaitlist().getAttendees();
+                out.writeInt(waiting.size());
+                for (String attendee : waiting) {
+                    out.writeInt(strings.index(attendee));
+                }
+            }
+            return image(EVENTS, strings, bytes);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Reads an events snapshot file into an EventManager.
+     * The time slots of each room are rebuilt from the events taking place in it.
+     * Attendees and speakers are given IDs in a registry of the EventManager, see EventManager.setUserRegistry.
+     *
+     * @param filename the file to read from
+     * @return the EventManager stored in the file, null if it could not be read
+     */
+    public EventManager readEvents(String filename) {
+        Reader in = open(filename, EVENTS);
+        if (in == null) {
+            return null;
+        }
+        int eventCount = in.nextInt();
+        int roomCount = in.nextInt();
+        HashMap<String, Room> schedule = new HashMap<>();
+        int rooms = in.nextInt();
+        for (int i = 0; i < rooms; i++) {
+            String roomID = in.nextString();
+            schedule.put(roomID, new Room(roomID, in.nextInt()));
+        }
+        HashMap<String, Event> eventList = new HashMap<>();
+        UserRegistry users = new UserRegistry();
+        int events = in.nextInt();
+        for (int i = 0; i < events; i++) {
+            String eventID = in.nextString();
+            String roomID = in.nextString();
+            int startTime = in.nextInt();
+            int endTime = in.nextInt();
+            String eventName = in.nextString();
+            Event event = new Event(eventID, roomID, startTime, endTime, eventName, in.nextInt());
+            event.setType(in.nextInt());
+            int attendees = in.nextInt();
+            for (int j = 0; j < attendees; j++) {
+                event.addAttendee(users.getUserID(in.nextString()));
+            }
+            int speakers = in.nextInt();
+            for (int j = 0; j < speakers; j++) {
+                event.addSpeaker(users.getUserID(in.nextString()));
+            }
+            int vips = in.nextInt();
+            for (int j = 0; j < vips; j++) {
+                event.getWaitlist().add(in.nextString(), true);
+            }
+            int waiting = in.nextInt();
+            for (int j = 0; j < waiting; j++) {
+                event.getWaitlist().add(in.nextString(), false);
+            }
+            schedule.get(roomID).addEvent(startTime, eventID, endTime - startTime);
+            eventList.put(eventID, event);
+        }
+        return new EventManager(schedule, eventList, eventCount, roomCount, users);
+    }
+
+    /**
+     * Writes the messages to a snapshot file, in order of message ID.
+     * Sealed segments that are not stored yet are written to their segment files first.
+     *
+     * @param filename the file to write to
+     * @param data the MessageManager to be written
+     */
+    public void writeMessages(String filename, MessageManager data) {
+        for (MessageSegment segment : data.getSegments()) {
+            if (!segment.isStored()) {
+                long changes = segment.getChangeCount();
+                writeFile(segmentFile(filename, segment.getFirstID()), encodeSegment(segment));
+                data.setStored(segment, changes, readSegment(segmentFile(filename, segment.getFirstID())));
+            }
+        }
+        writeFile(filename, encodeMessages(data));
+    }
+
+    /**
+     * Returns the name of the file a sealed segment is stored in, next to the message snapshot.
+     *
+     * @param filename the message snapshot file
+     * @param firstID the ID of the first message of the segment
+     * @return the segment file, i.e. messageManager.120.bin for messageManager.bin
+     */
+    public static String segmentFile(String filename, int firstID) {
+        String base = filename.endsWith(".bin") ? filename.substring(0, filename.length() - 4) : filename;
+        return base + "." + firstID + ".bin";
+    }
+
+    /**
+     * Encodes the manifest of the segments and the active segment into the bytes of a snapshot file.
+     *
+     * @param data the MessageManager to be encoded
+     * @return the bytes of the snapshot file, null if it could not be encoded
+     */
+    public byte[] encodeMessages(MessageManager data) {
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            synchronized (data) {
+                out.writeInt(data.getReservedID());
+                ArrayList<MessageSegment> segments = data.getSegments();
+                out.writeInt(segments.size());
+                for (MessageSegment segment : segments) {
+                    out.writeInt(segment.getFirstID());
+                    out.writeInt(segment.getEndID());
+                    out.writeLong(segment.getOpened());
+                    out.writeLong(segment.getSealed());
+                }
+                writeRequests(out, strings, data.getRequestSenders(false));
+                writeRequests(out, strings, data.getRequestSenders(true));
+                MessageSegment active = data.getActiveSegment();
+                out.writeInt(active.getFirstID());
+                out.writeLong(active.getOpened());
+                writeMessageTable(out, strings, active);
+            }
+            return image(MESSAGES, strings, bytes);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Encodes the messages of a sealed segment into the bytes of a segment file.
+     *
+     * @param segment the MessageSegment to be encoded
+     * @return the bytes of the segment file, null if it could not be encoded
+     */
+    public byte[] encodeSegment(MessageSegment segment) {
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writeMessageTable(new DataOutputStream(bytes), strings, segment);
+            return image(SEGMENT, strings, bytes);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Private helper function
+    // Writes the IDs of requests and the index of their sender, in request order
+    private void writeRequests(DataOutputStream out, StringTable strings,
+                               LinkedHashMap<Integer, String> requests) throws IOException {
+        out.writeInt(requests.size());
+        for (Map.Entry<Integer, String> request : requests.entrySet()) {
+            out.writeInt(request.getKey());
+            out.writeInt(strings.index(request.getValue()));
+        }
+    }
+
+    // Private helper function
+    // Reads the IDs of requests and their sender, as written by writeRequests
+    private LinkedHashMap<Integer, String> readRequests(Reader in) {
+        int count = in.nextInt();
+        LinkedHashMap<Integer, String> requests = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            int id = in.nextInt();
+            requests.put(id, in.nextString());
+        }
+        return requests;
+    }
+
+    // Private helper function
+    // Writes the headers, the recipient pool and the bodies of the messages of a segment, in order of message ID
+    private void writeMessageTable(DataOutputStream out, StringTable strings,
+                                   MessageSegment segment) throws IOException {
+        ArrayList<Integer> ids = segment.getMessageIDs();
+        ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+        DataOutputStream pool = new DataOutputStream(poolBytes);
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        DataOutputStream bodies = new DataOutputStream(bodyBytes);
+        out.writeInt(ids.size());
+        int poolSize = 0;
+        for (Integer id : ids) {
+            Message message = segment.getMessage(id);
+            byte flags = 0;
+            if (message.isRequest()) {
+                flags |= IS_REQUEST;
+            }
+            if (message.isAccepted()) {
+                flags |= IS_ACCEPTED;
+            }
+            if (message.getRecipientGroup() != null) {
+                flags |= IS_BROADCAST;
+            }
+            out.writeInt(id);
+            out.writeInt(strings.index(message.getSenderUsername()));
+            out.writeByte(flags);
+            if (message.getRecipientGroup() != null) {
+                out.writeInt(message.getCutoff());
+                out.writeInt(strings.index(message.getRecipientGroup()));
+            } else {
+                out.writeInt(message.getRecipientUsernames().size());
+                out.writeInt(poolSize);
+            }
+            out.writeInt(bodies.size());
+            for (String recipient : message.getRecipientUsernames()) {
+                pool.writeInt(strings.index(recipient));
+                poolSize++;
+            }
+            byte[] body = message.getMessage().getBytes(StandardCharsets.UTF_8);
+            bodies.writeInt(body.length);
+            bodies.write(body);
+        }
+        out.writeInt(poolSize);
+        poolBytes.writeTo(out);
+        bodyBytes.writeTo(out);
+    }
+
+    /**
+     * Opens a segment file as the message store of a stored segment, see MessageSegment.setStored.
+     *
+     * @param filename the segment file to read from
+     * @return the messages of the segment file, null if it could not be read
+     */
+    public IMessageSource readSegment(String filename) {
+        Reader in = open(filename, SEGMENT);
+        return in == null ? null : new MappedMessages(in);
+    }
+
+    /**
+     * Opens a messages snapshot file and the files of its sealed segments as the message store of a
+     * MessageManager. Only the manifest and the request index are read here, message headers and bodies stay
+     * in the files until they are looked up.
+     *
+     * @param filename the file to read from
+     * @return the MessageManager paging its messages in from the files, null if it could not be read
+     */
+    public MessageManager readMessages(String filename) {
+        Reader in = open(filename, MESSAGES);
+        if (in == null) {
+            return null;
+        }
+        int nextID = in.nextInt();
+        ArrayList<MessageSegment> segments = new ArrayList<>();
+        int sealedCount = in.nextInt();
+        for (int i = 0; i < sealedCount; i++) {
+            int firstID = in.nextInt();
+            int endID = in.nextInt();
+            long opened = in.nextLong();
+            long sealed = in.nextLong();
+            Reader segment = open(segmentFile(filename, firstID), SEGMENT);
+            if (segment == null) {
+                new IOException("Missing segment file: " + segmentFile(filename, firstID)).printStackTrace();
+                continue;
+            }
+            segments.add(new MessageSegment(new MappedMessages(segment), firstID, endID, opened, sealed));
+        }
+        LinkedHashMap<Integer, String> pending = readRequests(in);
+        LinkedHashMap<Integer, String> accepted = readRequests(in);
+        int activeFirstID = in.nextInt();
+        long activeOpened = in.nextLong();
+        MessageSegment active = new MessageSegment(new MappedMessages(in), activeFirstID, nextID, activeOpened, 0);
+        return new MessageManager(segments, active, nextID, pending, accepted);
+    }
+
+    // Private helper function
+    // Returns the kind of user stored in the users snapshot
+    private byte userKind(User user) {
+        if (user instanceof Organizer) {
+            return ORGANIZER;
+        } else if (user instanceof VIP) {
+            return VIP_USER;
+        } else if (user instanceof Speaker) {
+            return SPEAKER;
+        }
+        return ATTENDEE;
+    }
+
+    // Private helper function
+    // Writes a time to event ID schedule as [int count][int time, int eventID]*
+    private void writeSchedule(DataOutputStream out, StringTable strings,
+                               Map<Integer, Integer> schedule) throws IOException {
+        out.writeInt(schedule.size());
+        for (Map.Entry<Integer, Integer> entry : schedule.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeInt(strings.index(Integer.toString(entry.getValue())));
+        }
+    }
+
+    // Private helper function
+    // Reads a schedule written by writeSchedule, the event IDs are kept by their number
+    private TreeMap<Integer, Integer> readSchedule(Reader in) {
+        TreeMap<Integer, Integer> schedule = new TreeMap<>();
+        int count = in.nextInt();
+        for (int i = 0; i < count; i++) {
+            int time = in.nextInt();
+            schedule.put(time, Integer.parseInt(in.nextString()));
+        }
+        return schedule;
+    }
+
+    /**
+     * Writes an encoded snapshot to its file. The bytes are written to a temporary file and forced onto
+     * the disk, then the temporary file is moved over the snapshot, so a reader never sees a half-written file.
+     *
+     * @param filename the file to write to
+     * @param image the bytes of the snapshot file, as encoded by encodeUsers, encodeEvents or encodeMessages
+     */
+    public void writeFile(String filename, byte[] image) {
+        if (image != null && writeTemp(filename, image)) {
+            install(filename);
+        }
+    }
+
+    /**
+     * Writes an encoded snapshot to the temporary file next to its file and forces it onto the disk.
+     *
+     * @param filename the snapshot file the temporary file is for
+     * @param image the bytes of the snapshot file
+     * @return true if the temporary file was written
+     */
+    public boolean writeTemp(String filename, byte[] image) {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename + TEMP), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(image);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Moves the temporary file written by writeTemp over its snapshot file, if there is one.
+     *
+     * @param filename the snapshot file
+     * @return false if the temporary file could not be moved, it is then left in place
+     */
+    public boolean install(String filename) {
+        Path temp = Paths.get(filename + TEMP);
+        if (!Files.exists(temp)) {
+            return true;
+        }
+        try {
+            Path path = Paths.get(filename);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(path.toAbsolutePath().getParent());
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the temporary file written by writeTemp, if there is one.
+     *
+     * @param filename the snapshot file
+     */
+    public void discard(String filename) {
+        try {
+            Files.deleteIfExists(Paths.get(filename + TEMP));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Private helper function
+    // Forces a rename in the directory onto the disk, where the platform allows a directory to be opened
+    private void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // directories cannot be opened on every platform, the rename is still atomic
+        }
+    }
+
+    // Private helper function
+    // Lays out the header, the string table and the data as the bytes of a snapshot file
+    private byte[] image(byte kind, StringTable strings, ByteArrayOutputStream data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.size() + 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeByte(kind);
+        out.writeInt(strings.encoded.size());
+        int offset = 0;
+        out.writeInt(offset);
+        for (byte[] string : strings.encoded) {
+            offset += string.length;
+            out.writeInt(offset);
+        }
+        for (byte[] string : strings.encoded) {
+            out.write(string);
+        }
+        data.writeTo(out);
+        return bytes.toByteArray();
+    }
+
+    // Private helper function
+    // Maps a snapshot file and checks its header, returns null if it is missing or not readable
+    private Reader open(String filename, byte kind) {
+        Path path = Paths.get(filename);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.get() != kind) {
+                throw new IOException("Unsupported snapshot file: " + filename);
+            }
+            return new Reader(buffer);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * The messages of a mapped messages snapshot, read slot by slot through the fixed-width headers.
+     */
+    private static class MappedMessages implements IMessageSource {
+        private final Reader in;
+        private final int count;
+        private final int headers;
+        private final int pool;
+        private final int bodies;
+
+        private MappedMessages(Reader in) {
+            this.in = in;
+            this.count = in.nextInt();
+            this.headers = in.buffer.position();
+            this.pool = headers + count * MESSAGE_HEADER + 4;
+            this.bodies = pool + in.buffer.getInt(pool - 4) * 4;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public int getID(int slot) {
+            return in.buffer.getInt(headers + slot * MESSAGE_HEADER);
+        }
+
+        @Override
+        public int find(int messageID) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int id = getID(middle);
+                if (id < messageID) {
+                    low = middle + 1;
+                } else if (id > messageID) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String getSender(int slot) {
+            return in.string(in.buffer.getInt(headers + slot * MESSAGE_HEADER + 4));
+        }
+
+        @Override
+        public ArrayList<String> getRecipients(int slot) {
+            int header = headers + slot * MESSAGE_HEADER;
+            if ((in.buffer.get(header + 8) & IS_BROADCAST) != 0) {
+                return new ArrayList<>();
+            }
+            int recipientCount = in.buffer.getInt(header + 9);
+            int first = pool + in.buffer.getInt(header + 13) * 4;
+            ArrayList<String> recipients = new ArrayList<>(recipientCount);
+            for (int i = 0; i < recipientCount; i++) {
+                recipients.add(in.string(in.buffer.getInt(first + i * 4)));
+            }
+            return recipients;
+        }
+
+        @Override
+        public String getGroup(int slot) {
+            int header = headers + slot * MESSAGE_HEADER;
+            if ((in.buffer.get(header + 8) & IS_BROADCAST) == 0) {
+                return null;
+            }
+            return in.string(in.buffer.getInt(header + 13));
+        }
+
+        @Override
+        public int getCutoff(int slot) {
+            int header = headers + slot * MESSAGE_HEADER;
+            if ((in.buffer.get(header + 8) & IS_BROADCAST) == 0) {
+                return 0;
+            }
+            return in.buffer.getInt(header + 9);
+        }
+
+        @Override
+        public boolean isRequest(int slot) {
+            return (in.buffer.get(headers + slot * MESSAGE_HEADER + 8) & IS_REQUEST) != 0;
+        }
+
+        @Override
+        public boolean isAccepted(int slot) {
+            return (in.buffer.get(headers + slot * MESSAGE_HEADER + 8) & IS_ACCEPTED) != 0;
+        }
+
+        @Override
+        public Message load(int slot) {
+            int body = bodies + in.buffer.getInt(headers + slot * MESSAGE_HEADER + 17);
+            String group = getGroup(slot);
+            if (group != null) {
+                return new Message(getSender(slot), group, in.utf8(body + 4, in.buffer.getInt(body)),
+                        getCutoff(slot));
+            }
+            Message message = new Message(getSender(slot), getRecipients(slot),
+                    in.utf8(body + 4, in.buffer.getInt(body)), isRequest(slot) || isAccepted(slot));
+            if (isAccepted(slot)) {
+                message.acceptRequest();
+            }
+            return message;
+        }
+    }
+
+    /**
+     * Interns strings while a snapshot is written, giving each distinct string one index.
+     */
+    private static class StringTable {
+        private final LinkedHashMap<String, Integer> indexes = new LinkedHashMap<>();
+        private final ArrayList<byte[]> encoded = new ArrayList<>();
+
+        private int index(String string) {
+            if (string == null) {
+                return -1;
+            }
+            Integer index = indexes.get(string);
+            if (index == null) {
+                index = encoded.size();
+                indexes.put(string, index);
+                encoded.add(string.getBytes(StandardCharsets.UTF_8));
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Reads from a mapped snapshot file, decoding strings of the string table on first use.
+     */
+    private static class Reader {
+        private final MappedByteBuffer buffer;
+        private final String[] strings;
+        private final int offsets;
+        private final int stringData;
+
+        private Reader(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+            this.strings = new String[buffer.getInt()];
+            this.offsets = buffer.position();
+            this.stringData = offsets + (strings.length + 1) * 4;
+            buffer.position(stringData + buffer.getInt(offsets + strings.length * 4));
+        }
+
+        private int nextInt() {
+            return buffer.getInt();
+        }
+
+        private long nextLong() {
+            return buffer.getLong();
+        }
+
+        private String nextString() {
+            return string(buffer.getInt());
+        }
+
+        private String string(int index) {
+            if (index < 0) {
+                return null;
+            }
+            if (strings[index] == null) {
+                int start = buffer.getInt(offsets + index * 4);
+                int end = buffer.getInt(offsets + (index + 1) * 4);
+                strings[index] = utf8(stringData + start, end - start);
+            }
+            return strings[index];
+        }
+
+        private String utf8(int position, int length) {
+            byte[] bytes = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(position);
+            view.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -10,55 +10,77 @@ import com.itextpdf.layout.property.HorizontalAlignment;
 import com.itextpdf.layout.property.TextAlignment;
 import java.io.IOException;
 import java.io.FileOutputStream;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * The ConvertToPDF Class converts the event schedule to a PDF file.
  *
+ * The schedule is a table with one column per room and one row per interval between the start and end
+ * times of the events, so every event is shown whatever its time and however long it lasts.
  *
  * @author Temilade Adeleye
  * @version 1.0
  */
 
 public class ConvertToPDF {
-    private HashMap<String, HashMap<String, String>> rooms;
-    EventManager e = new SerializeData().deserializeEvent("phase2/src/main/java/gateway/eventManager.ser");
+    private LinkedHashMap<String, TreeMap<Integer, String>> rooms;
+    private TreeSet<Integer> times;
+    private EventManager e;
 
     /**
      * Constructor of the ConvertToPDF Class.
+     *
+     * @param e the EventManager of the running conference
      */
-    public ConvertToPDF() {}
+    public ConvertToPDF(EventManager e) {
+        this.e = e;
+    }
 
     /**
-     * Helper method: gets roomID, Time and eventID info from eventManager.ser and
-     * puts info in rooms HashMap where the key is the roomID, the value is another HashMap
-     * where the key is Time and the value is eventID
+     * Helper method: gets the events of each room from the calendars of the eventManager and
+     * puts info in rooms HashMap where the key is the roomID, the value is a TreeMap
+     * where the key is the start time and the value is eventID. The start and end times of the events
+     * are put in times.
      */
     private  void getRoom(){
-        rooms = new HashMap<>();
+        rooms = new LinkedHashMap<>();
+        times = new TreeSet<>();
         if (e!=null) {
-            for (String key : e.getEventList().keySet()) {
-                String roomID = e.getRoomID(key);
-                String startTime = e.getStartTime(key);
-                String endTime = e.getEndTime(key);
-                HashMap<String, String> time = new HashMap<>();
-                time.put(startTime, key);
-                //add the same eventID for consecutively different times
-                //in the same room into rooms hashmap
-                int sTime = Integer.parseInt(startTime);
-                int eTime = Integer.parseInt(endTime);
-                while (sTime < eTime) {
-                    if (rooms.containsKey(roomID)) {
-                        rooms.get(roomID).put(sTime + "", key);
-                    } else {
-                        rooms.put(roomID, time);
-                    }
-                    sTime++;
+            for (String roomID : e.getEventSchedule().keySet()) {
+                ArrayList<String> events = e.getRoomEvents(roomID);
+                if (events == null || events.isEmpty()) {
+                    continue;
+                }
+                TreeMap<Integer, String> starts = new TreeMap<>();
+                for (String eventID : events) {
+                    starts.put(e.getStartTime(eventID), eventID);
+                    times.add(e.getStartTime(eventID));
+                    times.add(e.getEndTime(eventID));
                 }
+                rooms.put(roomID, starts);
             }
         }
     }
 
+    /**
+     * Helper method: finds the event of a room taking place at a time
+     *
+     * @param starts the eventIDs of the room by start time
+     * @param time the time to look for
+     * @return the eventID taking place at the time, null if the room is free
+     */
+    private String getEventAt(TreeMap<Integer, String> starts, int time){
+        Map.Entry<Integer, String> event = starts.floorEntry(time);
+        if (event != null && e.getEndTime(event.getValue()) > time) {
+            return event.getValue();
+        }
+        return null;
+    }
+
     /**
      * creates PDF using information in rooms HashMap
      * @param destination the destination of the PDF file
@@ -85,20 +107,26 @@ public class ConvertToPDF {
             for (String key : rooms.keySet()){
                 table.addCell(new Cell().add("Room "+key));
             }
-            // adds time and event info under the appropriate headers
-            int t1 = 9;
-            int t2 = 10;
-            while(t1<17){
-                table.addCell(new Cell().add(t1+ ":00-"+ t2 +":00"));
+            // adds time and event info under the appropriate headers, one row for each interval
+            // between two event times in which at least one event takes place
+            Integer t1 = times.first();
+            Integer t2 = times.higher(t1);
+            while(t2 != null){
+                ArrayList<String> row = new ArrayList<>();
+                boolean busy = false;
                 for (String key : rooms.keySet()) {
-                    if (rooms.get(key).containsKey(t1+"")) {
-                        table.addCell(new Cell().add(e.getEventName(rooms.get(key).get(t1+""))));
-                    } else {
-                        table.addCell(new Cell().add(""));
+                    String eventID = getEventAt(rooms.get(key), t1);
+                    row.add(eventID == null ? "" : e.getEventName(eventID));
+                    busy = busy || eventID != null;
+                }
+                if (busy) {
+                    table.addCell(new Cell().add(t1+ ":00-"+ t2 +":00"));
+                    for (String name : row) {
+                        table.addCell(new Cell().add(name));
                     }
                 }
-                t1++;
-                t2++;
+                t1 = t2;
+                t2 = times.higher(t1);
             }
             document.add(table);
         }
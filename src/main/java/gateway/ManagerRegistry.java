@@ -0,0 +1,321 @@
+package gateway;
+
+import event.EventManager;
+import interfaces.IManager;
+import message.MessageManager;
+import message.MessageSegment;
+import user.SpeakerManager;
+import user.UserManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ManagerRegistry Class holds the managers for the whole run of the program, so sessions attach to
+ * managers that are already in memory instead of loading them from the disk at every login.
+ *
+ * Every change is appended to the journal as it happens. A background thread forces the journal onto the
+ * disk at a fixed interval. Once the journal is large enough, the changes are paused for as long as the
+ * changes in progress take to finish, see MutationLog.pauseChanges, the managers are encoded into memory
+ * and the journal is rotated. Sessions stay connected throughout, only a change made at that moment waits.
+ * The SnapshotWriter then writes the snapshots on its own thread.
+ *
+ * The registry keeps the change count of each manager as of its snapshot on the disk, see IManager. A
+ * snapshot is only encoded and written again if its managers changed since, so a journal filled by one
+ * manager does not rewrite the files of the others. Sealed message segments are written to their own file
+ * once, when they are first folded, and only again if a request in them is accepted.
+ *
+ * With a message retention set, message segments sealed longer ago than the retention are dropped when the
+ * journal is folded, and their files are deleted or moved to the archive directory once the snapshot that
+ * no longer lists them is in place.
+ *
+ * @version 1.0
+ */
+public class ManagerRegistry {
+
+    // Directory, inside the data directory, that dropped message segments are archived to
+    private static final String ARCHIVE = "archive/";
+    // Names of segment files, see BinarySnapshot.segmentFile
+    private static final String SEGMENT_FILE = BinarySnapshot.segmentFile(SnapshotWriter.MESSAGES, 0)
+            .replace(".0.bin", "") + "\\.[0-9]+\\.bin";
+    // Milliseconds a flush waits for the changes in progress before it tries again at the next interval
+    private static final long PAUSE_TIMEOUT = 1000;
+
+    private final String directory;
+    private final MutationLog journal;
+    private final UserManager userManager;
+    private final MessageManager messageManager;
+    private final EventManager eventManager;
+    private final SpeakerManager speakerManager;
+    private final SnapshotWriter snapshots;
+    private ScheduledExecutorService flusher;
+    // Change counts of the managers as of the snapshots on the disk
+    private volatile long savedEvents;
+    private volatile long savedUsers;
+    private volatile long savedMessages;
+    // Segment files to delete or archive once a snapshot without them is in place
+    private final ArrayList<String> droppedSegments = new ArrayList<>();
+    private long retention;
+    private boolean archive;
+
+    /**
+     * Constructor of the ManagerRegistry Class.
+     * Reads the managers from the snapshots, replays the journal into them and attaches them to it.
+     *
+     * @param directory the directory the snapshot files and the journal are stored in
+     */
+    public ManagerRegistry(String directory) {
+        this.directory = directory;
+        this.journal = new MutationLog(directory + "journal.log");
+        this.snapshots = new SnapshotWriter(directory, journal);
+        snapshots.recover();
+        BinarySnapshot snapshot = new BinarySnapshot();
+        eventManager = snapshot.readEvents(directory + SnapshotWriter.EVENTS);
+        userManager = snapshot.readUsers(directory + SnapshotWriter.USERS);
+        messageManager = snapshot.readMessages(directory + SnapshotWriter.MESSAGES);
+        speakerManager = snapshot.readSpeakers(userManager);
+        eventManager.setUserRegistry(userManager);
+        messageManager.setUserRegistry(userManager);
+        userManager.setEventTimes(eventManager);
+        speakerManager.setEventTimes(eventManager);
+        // broadcasts replayed from older journals take their cut-off from the users replayed before them
+        messageManager.setRecipientGroups(userManager);
+        journal.replay(userManager, messageManager, eventManager, speakerManager);
+        journal.attach(userManager, messageManager, eventManager, speakerManager);
+        findDroppedSegments();
+    }
+
+    /**
+     * Sets how long sealed message segments are kept.
+     *
+     * @param retentionMillis the milliseconds a segment is kept after it is sealed, 0 to keep every segment
+     * @param archive         true to move dropped segment files to the archive directory instead of deleting them
+     */
+    public synchronized void setMessageRetention(long retentionMillis, boolean archive) {
+        this.retention = retentionMillis;
+        this.archive = archive;
+    }
+
+    // Private helper function
+    // Finds the segment files that are not listed in the message snapshot, i.e. segments that were
+    // dropped before the program stopped but whose files were not removed yet
+    private void findDroppedSegments() {
+        HashSet<String> listed = new HashSet<>();
+        for (MessageSegment segment : messageManager.getSegments()) {
+            listed.add(segmentName(segment));
+        }
+        String[] names = new File(directory).list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            if (name.matches(SEGMENT_FILE) && !listed.contains(name)) {
+                droppedSegments.add(name);
+            }
+        }
+    }
+
+    /**
+     * Starts flushing the journal in the background.
+     *
+     * @param intervalSeconds the seconds between two flushes
+     */
+    public synchronized void startFlushing(long intervalSeconds) {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "registry-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Attaches a session to the managers. The session holds no lock, each change it makes is entered on its
+     * own, so an idle session never keeps the journal from being folded.
+     *
+     * @return HashMap of String keys that map to the managers
+     */
+    public HashMap<String, IManager> attach() {
+        HashMap<String, IManager> imanager = new HashMap<>();
+        imanager.put("userManager", userManager);
+        imanager.put("speakerManager", speakerManager);
+        imanager.put("messageManager", messageManager);
+        imanager.put("eventManager", eventManager);
+        return imanager;
+    }
+
+    /**
+     * Forces the journal onto the disk, and hands it to the SnapshotWriter to be folded into the snapshots
+     * of the managers that changed if it is large enough and no earlier fold is still being written.
+     * The changes are only paused while the managers are encoded and the journal is rotated.
+     * Speakers are saved with the other users, so the SpeakerManager does not have its own file.
+     */
+    public void flush() {
+        journal.sync();
+        long cutoff;
+        boolean archiveDropped;
+        synchronized (this) {
+            cutoff = retention > 0 ? System.currentTimeMillis() - retention : Long.MIN_VALUE;
+            archiveDropped = archive;
+        }
+        if (!(journal.needsCompaction() || messageManager.hasSegmentsBefore(cutoff))
+                || snapshots.isWriting() || !journal.pauseChanges(PAUSE_TIMEOUT)) {
+            return;
+        }
+        HashMap<String, byte[]> images = new HashMap<>();
+        HashMap<MessageSegment, Long> sealed = new HashMap<>();
+        ArrayList<String> dropped;
+        long events;
+        long users;
+        long messages;
+        try {
+            BinarySnapshot snapshot = new BinarySnapshot();
+            synchronized (droppedSegments) {
+                for (MessageSegment segment : messageManager.dropSegmentsBefore(cutoff)) {
+                    droppedSegments.add(segmentName(segment));
+                }
+                dropped = new ArrayList<>(droppedSegments);
+            }
+            for (MessageSegment segment : messageManager.getSegments()) {
+                if (!segment.isStored()) {
+                    sealed.put(segment, segment.getChangeCount());
+                    images.put(segmentName(segment), snapshot.encodeSegment(segment));
+                }
+            }
+            events = eventManager.getChangeCount();
+            users = userManager.getChangeCount() + speakerManager.getChangeCount();
+            messages = messageManager.getChangeCount();
+            if (events != savedEvents) {
+                images.put(SnapshotWriter.EVENTS, snapshot.encodeEvents(eventManager));
+            }
+            if (users != savedUsers) {
+                images.put(SnapshotWriter.USERS, snapshot.encodeUsers(userManager));
+            }
+            if (messages != savedMessages) {
+                images.put(SnapshotWriter.MESSAGES, snapshot.encodeMessages(messageManager));
+            }
+            if (images.containsValue(null)) {
+                return;
+            }
+            journal.rotate();
+        } finally {
+            journal.resumeChanges();
+        }
+        boolean queued = snapshots.write(images, () -> {
+            savedEvents = events;
+            savedUsers = users;
+            savedMessages = messages;
+            BinarySnapshot stored = new BinarySnapshot();
+            for (Map.Entry<MessageSegment, Long> segment : sealed.entrySet()) {
+                // page the segment in from its file from now on, so its messages leave the heap
+                messageManager.setStored(segment.getKey(), segment.getValue(),
+                        stored.readSegment(directory + segmentName(segment.getKey())));
+            }
+            removeSegments(dropped, archiveDropped);
+        });
+        if (!queued) {
+            // the rotated segment stays and the managers stay unsaved, so the next fold covers them
+            new IllegalStateException("An earlier fold is still being written, the journal is folded later")
+                    .printStackTrace();
+        }
+    }
+
+    // Private helper function
+    // Returns the name of the file of a sealed segment, relative to the directory
+    private String segmentName(MessageSegment segment) {
+        return BinarySnapshot.segmentFile(SnapshotWriter.MESSAGES, segment.getFirstID());
+    }
+
+    // Private helper function
+    // Deletes or archives the files of dropped segments, once the snapshot that no longer lists them is in place
+    private void removeSegments(ArrayList<String> names, boolean archiveDropped) {
+        for (String name : names) {
+            try {
+                Path file = Paths.get(directory + name);
+                if (archiveDropped && Files.exists(file)) {
+                    Path archived = Paths.get(directory + ARCHIVE + name);
+                    Files.createDirectories(archived.getParent());
+                    Files.move(file, archived, StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    Files.deleteIfExists(file);
+                }
+                synchronized (droppedSegments) {
+                    droppedSegments.remove(name);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stops the background flushing, then flushes and closes the journal once the last fold is written.
+     * Sessions should be finished before the registry is closed.
+     */
+    public void close() {
+        synchronized (this) {
+            if (flusher != null) {
+                flusher.shutdown();
+                try {
+                    flusher.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                flusher = null;
+            }
+        }
+        flush();
+        snapshots.close();
+        journal.close();
+    }
+
+    /**
+     * Returns the UserManager held by this registry
+     *
+     * @return UserManager   The UserManager shared by every session
+     */
+    public UserManager getUserManager() {
+        return userManager;
+    }
+
+    /**
+     * Returns the MessageManager held by this registry
+     *
+     * @return MessageManager   The MessageManager shared by every session
+     */
+    public MessageManager getMessageManager() {
+        return messageManager;
+    }
+
+    /**
+     * Returns the EventManager held by this registry
+     *
+     * @return EventManager   The EventManager shared by every session
+     */
+    public EventManager getEventManager() {
+        return eventManager;
+    }
+
+    /**
+     * Returns the SpeakerManager held by this registry
+     *
+     * @return SpeakerManager   The SpeakerManager shared by every session
+     */
+    public SpeakerManager getSpeakerManager() {
+        return speakerManager;
+    }
+}
@@ -0,0 +1,439 @@
+package gateway;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import event.EventManager;
+import interfaces.IJournal;
+import message.MessageManager;
+import user.SpeakerManager;
+import user.UserManager;
+
+/**
+ * The MutationLog Class is an append-only journal of the changes made to the managers.
+ * Every change is appended as it happens, so saving a session only costs the size of the change.
+ * Once the log grows past a threshold it is compacted, i.e. folded into the snapshots and emptied.
+ *
+ * Each record is stored as [int length][payload][long CRC32 of payload], where the payload is
+ * [byte type][int field count] followed by each field as [int length][UTF-8 bytes].
+ * Records can be appended from several threads, each record is written whole.
+ *
+ * To fold the log into the snapshots while the managers keep changing, the log is first rotated: its
+ * records move to a rotated segment (filename.1) and new records start an empty log. Once the snapshots
+ * of the rotated records are written and forced onto the disk, the segment is renamed to filename.folded,
+ * the snapshots are moved into place and the folded segment is deleted. Until it is folded, the rotated
+ * segment is replayed before the log.
+ *
+ * The managers enter every change through beginChange, so the log can be rotated between two changes
+ * without waiting for the sessions: pauseChanges only waits for the changes in progress to finish.
+ *
+ * @version 1.0
+ */
+public class MutationLog implements IJournal {
+
+    // Size after which the log is folded into the snapshots
+    private static final long COMPACT_THRESHOLD = 1024 * 1024;
+    private static final String ROTATED = ".1";
+    private static final String FOLDED = ".folded";
+
+    private String filename;
+    private FileOutputStream file;
+    private DataOutputStream out;
+    private long size;
+    // Held shared by every change in progress, and exclusively while the log is cut for a snapshot
+    private final ReentrantReadWriteLock changes = new ReentrantReadWriteLock();
+
+    /**
+     * Constructor of the MutationLog Class.
+     *
+     * @param filename the log file to append to
+     */
+    public MutationLog(String filename) {
+        this.filename = filename;
+        this.size = new File(filename).length();
+    }
+
+    /**
+     * Applies every record in the rotated segment and then the log to the managers that were loaded from
+     * the snapshots. A torn record at the end of a file (from a crash mid-write) is discarded.
+     * This must be called before the managers are attached to the log.
+     *
+     * @param uManager the UserManager loaded from the snapshot
+     * @param mManager the MessageManager loaded from the snapshot
+     * @param eManager the EventManager loaded from the snapshot
+     * @param sManager the SpeakerManager loaded from the snapshot
+     */
+    public void replay(UserManager uManager, MessageManager mManager,
+                       EventManager eManager, SpeakerManager sManager) {
+        replay(new File(filename + ROTATED), uManager, mManager, eManager, sManager);
+        size = replay(new File(filename), uManager, mManager, eManager, sManager);
+    }
+
+    // Private helper function
+    // Applies the records of one file, truncates a torn record and returns the length of the valid records
+    private long replay(File file, UserManager uManager, MessageManager mManager,
+                        EventManager eManager, SpeakerManager sManager) {
+        if (!file.exists()) {
+            return 0;
+        }
+        long valid = 0;
+        try (RandomAccessFile in = new RandomAccessFile(file, "rw")) {
+            long length = in.length();
+            CRC32 crc = new CRC32();
+            while (length - valid >= 4) {
+                in.seek(valid);
+                int recordLength = in.readInt();
+                if (recordLength <= 0 || length - valid - 4 < (long) recordLength + 8) {
+                    break;
+                }
+                byte[] payload = new byte[recordLength];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if (in.readLong() != crc.getValue()) {
+                    break;
+                }
+                apply(payload, uManager, mManager, eManager, sManager);
+                valid += 4 + recordLength + 8;
+            }
+            if (valid < length) {
+                in.setLength(valid);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return valid;
+    }
+
+    /**
+     * Starts recording every change made through the managers to this log.
+     *
+     * @param uManager the UserManager to record
+     * @param mManager the MessageManager to record
+     * @param eManager the EventManager to record
+     * @param sManager the SpeakerManager to record
+     */
+    public void attach(UserManager uManager, MessageManager mManager,
+                       EventManager eManager, SpeakerManager sManager) {
+        uManager.setJournal(this);
+        mManager.setJournal(this);
+        eManager.setJournal(this);
+        sManager.setJournal(this);
+    }
+
+    /**
+     * Appends a record to the end of the log and flushes it.
+     *
+     * @param type   the record type
+     * @param fields the arguments of the change
+     */
+    @Override
+    public synchronized void record(byte type, String... fields) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream payload = new DataOutputStream(bytes);
+            payload.writeByte(type);
+            payload.writeInt(fields.length);
+            for (String field : fields) {
+                byte[] encoded = field.getBytes(StandardCharsets.UTF_8);
+                payload.writeInt(encoded.length);
+                payload.write(encoded);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+
+            if (out == null) {
+                file = new FileOutputStream(filename, true);
+                out = new DataOutputStream(new BufferedOutputStream(file));
+            }
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+            out.writeLong(crc.getValue());
+            out.flush();
+            size += 4 + bytes.size() + 8;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Forces the records appended so far onto the disk, so they survive a crash of the machine
+     * and not only of the program.
+     */
+    @Override
+    public synchronized void sync() {
+        if (out != null) {
+            try {
+                out.flush();
+                file.getFD().sync();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Enters a change made through a manager, waits while the changes are paused.
+     */
+    @Override
+    public void beginChange() {
+        changes.readLock().lock();
+    }
+
+    /**
+     * Leaves a change entered by beginChange.
+     */
+    @Override
+    public void endChange() {
+        changes.readLock().unlock();
+    }
+
+    /**
+     * Waits for the changes in progress to finish and keeps new changes from starting, so the managers
+     * can be encoded and the log rotated at the same point. Must be matched by resumeChanges if it succeeds.
+     *
+     * @param timeoutMillis how long to wait for the changes in progress
+     * @return true if the changes are paused, false if the wait timed out
+     */
+    public boolean pauseChanges(long timeoutMillis) {
+        try {
+            return changes.writeLock().tryLock(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Lets the changes paused by pauseChanges continue.
+     */
+    public void resumeChanges() {
+        changes.writeLock().unlock();
+    }
+
+    /**
+     * Returns whether the log has grown large enough to be folded into the snapshots.
+     *
+     * @return true if the log should be compacted
+     */
+    public synchronized boolean needsCompaction() {
+        return size >= COMPACT_THRESHOLD;
+    }
+
+    /**
+     * Moves the records of the log to the rotated segment, so that new records start an empty log.
+     * If an earlier rotated segment was never folded, the records are appended to it.
+     * Must be called while the changes are paused, so the managers match the rotated records exactly.
+     */
+    public synchronized void rotate() {
+        close();
+        try {
+            Path log = Paths.get(filename);
+            Path rotated = Paths.get(filename + ROTATED);
+            if (!Files.exists(log)) {
+                return;
+            }
+            if (Files.exists(rotated)) {
+                Files.write(rotated, Files.readAllBytes(log), StandardOpenOption.APPEND);
+                Files.delete(log);
+            } else {
+                Files.move(log, rotated, StandardCopyOption.ATOMIC_MOVE);
+            }
+            size = 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Marks the rotated segment as folded, i.e. its records are part of the snapshots that are being
+     * moved into place and it must no longer be replayed.
+     *
+     * @return true if the segment was marked, or there was no rotated segment
+     */
+    public boolean fold() {
+        Path rotated = Paths.get(filename + ROTATED);
+        if (!Files.exists(rotated)) {
+            return true;
+        }
+        try {
+            Files.move(rotated, Paths.get(filename + FOLDED),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether a folded segment is left, i.e. moving the snapshots into place was interrupted.
+     *
+     * @return true if the folded segment exists
+     */
+    public boolean isFolded() {
+        return Files.exists(Paths.get(filename + FOLDED));
+    }
+
+    /**
+     * Deletes the folded segment, once the snapshots it was folded into are in place.
+     */
+    public void deleteFolded() {
+        try {
+            Files.deleteIfExists(Paths.get(filename + FOLDED));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Empties the log and deletes its segments. Used when the snapshots are replaced as a whole.
+     */
+    public synchronized void clear() {
+        close();
+        try {
+            new FileOutputStream(filename).close();
+            Files.deleteIfExists(Paths.get(filename + ROTATED));
+            Files.deleteIfExists(Paths.get(filename + FOLDED));
+            size = 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Closes the log file, later records will reopen it.
+     */
+    public synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            out = null;
+            file = null;
+        }
+    }
+
+    // Private helper function
+    // Decodes one record and calls the manager method it was recorded from
+    private void apply(byte[] payload, UserManager uManager, MessageManager mManager,
+                       EventManager eManager, SpeakerManager sManager) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        String[] f = new String[in.readInt()];
+        for (int i = 0; i < f.length; i++) {
+            byte[] encoded = new byte[in.readInt()];
+            in.readFully(encoded);
+            f[i] = new String(encoded, StandardCharsets.UTF_8);
+        }
+        switch (type) {
+            case SEND_MESSAGE:
+                ArrayList<String> recipients = new ArrayList<>();
+                for (int i = 3; i < f.length; i++) {
+                    recipients.add(f[i]);
+                }
+                mManager.sendMessage(f[0], recipients, f[1], Boolean.parseBoolean(f[2]));
+                break;
+            case BROADCAST_MESSAGE:
+                mManager.sendBroadcast(f[0], f[1], f[2]);
+                break;
+            case RESERVE_MESSAGE_IDS:
+                mManager.restoreIDReservation(Integer.parseInt(f[0]));
+                break;
+            case SEND_NUMBERED_MESSAGE:
+                ArrayList<String> numberedRecipients = new ArrayList<>();
+                for (int i = 4; i < f.length; i++) {
+                    numberedRecipients.add(f[i]);
+                }
+                mManager.restoreMessage(Integer.parseInt(f[0]), f[1], numberedRecipients, f[2],
+                        Boolean.parseBoolean(f[3]));
+                break;
+            case BROADCAST_NUMBERED_MESSAGE:
+                mManager.restoreBroadcast(Integer.parseInt(f[0]), f[1], f[2], f[3]);
+                break;
+            case BROADCAST_CUTOFF_MESSAGE:
+                mManager.restoreBroadcast(Integer.parseInt(f[0]), f[1], f[2], Integer.parseInt(f[3]), f[4]);
+                break;
+            case ACCEPT_REQUEST:
+                mManager.acceptRequest(Integer.parseInt(f[0]));
+                break;
+            case ADD_EVENT:
+                eManager.addEvent(f[0], Integer.parseInt(f[1]), Integer.parseInt(f[2]), f[3], Integer.parseInt(f[4]));
+                break;
+            case DEL_EVENT:
+                eManager.delEvent(f[0]);
+                break;
+            case ADD_ATTENDEE:
+                eManager.addAttendee(f[0], f[1]);
+                break;
+            case REMOVE_ATTENDEE:
+                eManager.removeAttendee(f[0], f[1]);
+                break;
+            case ADD_SPEAKER:
+                eManager.addSpeaker(f[0], f[1]);
+                break;
+            case SET_TYPE:
+                eManager.setType(f[0], Integer.parseInt(f[1]));
+                break;
+            case SET_CAPACITY:
+                eManager.setCapacity(f[0], Integer.parseInt(f[1]));
+                break;
+            case ADD_ROOM:
+                eManager.addRoom(Integer.parseInt(f[0]));
+                break;
+            case NEW_ATTENDEE:
+                uManager.newAttendee(f[0], f[1], f[2]);
+                break;
+            case NEW_VIP:
+                uManager.newVIP(f[0], f[1], f[2]);
+                break;
+            case NEW_ORGANIZER:
+                uManager.newOrganizer(f[0], f[1], f[2]);
+                break;
+            case NEW_SPEAKER:
+                sManager.newSpeaker(uManager, f[0], f[1], f[2]);
+                break;
+            case ADD_CONTACTS:
+                uManager.addUserContacts(f[0], f[1]);
+                break;
+            case REMOVE_CONTACTS:
+                uManager.removeUserContacts(f[0], f[1]);
+                break;
+            case ADD_USER_EVENT:
+                uManager.addUserEvent(f[0], Integer.parseInt(f[1]), f[2]);
+                break;
+            case REMOVE_USER_EVENT:
+                uManager.removeUserEvent(f[0], Integer.parseInt(f[1]));
+                break;
+            case ADD_SPEAKER_EVENT:
+                sManager.addSpeakerEvent(f[0], Integer.parseInt(f[1]), f[2]);
+                break;
+            case REMOVE_SPEAKER_EVENT:
+                sManager.removeSpeakerEvent(f[0], Integer.parseInt(f[1]));
+                break;
+            case JOIN_WAITLIST:
+                eManager.joinWaitlist(f[0], f[1], Boolean.parseBoolean(f[2]));
+                break;
+            case LEAVE_WAITLIST:
+                eManager.leaveWaitlist(f[0], f[1]);
+                break;
+        }
+    }
+}
@@ -6,14 +6,13 @@ import event.EventManager;
 import event.Room;
 import message.Message;
 import message.MessageManager;
+import message.MessagePostings;
 import user.User;
-import user.Speaker;
 import user.UserManager;
 import user.VIP;
 import user.Attendee;
 import user.Organizer;
-import user.SpeakerManager;
-import java.util.ArrayList;
+import java.io.File;
 import java.util.HashMap;
 
 /**
@@ -37,15 +36,13 @@ public class ResetAll {
      */
     public void reset() {
         HashMap<String, User> userList = new HashMap<>();
-        HashMap<String, Speaker> speakerMap = new HashMap<>();
-        HashMap<String, ArrayList<Integer>> messageSenders = new HashMap<>();
-        HashMap<String, ArrayList<Integer>> messageRecipients = new HashMap<>();
+        HashMap<String, MessagePostings> messageSenders = new HashMap<>();
+        HashMap<String, MessagePostings> messageRecipients = new HashMap<>();
         HashMap<Integer, Message> messageIDs = new HashMap<>();
         HashMap<String, Attendee> attendeemap = new HashMap<>();
         HashMap<String, Organizer> organizerMap = new HashMap<>();
         HashMap<String, VIP> VIPHash = new HashMap<>();
         UserManager U = new UserManager(userList, organizerMap, attendeemap, VIPHash);
-        SpeakerManager S = new SpeakerManager(speakerMap);
         MessageManager M = new MessageManager(messageSenders, messageRecipients, messageIDs);
         HashMap<String, Room> eventSchedule =
                 new HashMap<>();
@@ -54,10 +51,17 @@ public class ResetAll {
         eventSchedule.put("1", room1);
         EventManager E = new EventManager(eventSchedule, eventlist);
 
-        SerializeData serializer = new SerializeData();
-        serializer.serializeUser("src/main/java/gateway/userManager.ser",U);
-        serializer.serializeEvent("src/main/java/gateway/eventManager.ser",E);
-        serializer.serializeMessage("src/main/java/gateway/messageManager.ser",M);
-        serializer.serializeSpeaker("src/main/java/gateway/speakerManager.ser",S);
+        BinarySnapshot snapshot = new BinarySnapshot();
+        snapshot.writeUsers("src/main/java/gateway/userManager.bin",U);
+        snapshot.writeEvents("src/main/java/gateway/eventManager.bin",E);
+        snapshot.writeMessages("src/main/java/gateway/messageManager.bin",M);
+        new MutationLog("src/main/java/gateway/journal.log").clear();
+        File[] segments = new File("src/main/java/gateway/").listFiles(
+                (directory, name) -> name.matches("messageManager\\.[0-9]+\\.bin"));
+        if (segments != null) {
+            for (File segment : segments) {
+                segment.delete();
+            }
+        }
     }
 }
@@ -0,0 +1,316 @@
+package gateway;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * The SessionConsole Class lets the controllers and presenters, which read System.in through Scanners and
+ * print to System.out, serve several users at once. Once installed, System.in and System.out pass every
+ * read and write on to the streams of the session the current thread is serving, or to the real console
+ * for threads that are not serving a session. Each session prints through a PrintStream of its own, so
+ * sessions never wait on each other to print.
+ *
+ * The controllers create a new Scanner for each prompt and a Scanner reads ahead as far as it can, so a
+ * session's input is handed out at most one line per read and never reports more bytes available. No line
+ * is lost when a Scanner is dropped.
+ *
+ * @version 1.0
+ */
+public class SessionConsole {
+
+    private static final ThreadLocal<InputStream> SESSION_IN = new ThreadLocal<>();
+    private static final ThreadLocal<PrintStream> SESSION_OUT = new ThreadLocal<>();
+
+    private static InputStream consoleIn;
+    private static PrintStream consoleOut;
+
+    /**
+     * Replaces System.in and System.out with streams that are routed by the current session.
+     * Installing more than once has no effect.
+     */
+    public static synchronized void install() {
+        if (consoleIn != null) {
+            return;
+        }
+        consoleIn = System.in;
+        consoleOut = System.out;
+        System.setIn(new RoutedInput());
+        System.setOut(new RoutedOutput());
+    }
+
+    /**
+     * Makes the current thread serve a session: its reads of System.in come from the session's input and
+     * its writes to System.out go to the session's output.
+     *
+     * @param in  the input of the session
+     * @param out the output of the session
+     */
+    public static void attach(InputStream in, OutputStream out) {
+        SESSION_IN.set(new LineInput(in));
+        SESSION_OUT.set(new PrintStream(out, true));
+    }
+
+    /**
+     * Returns the current thread to the real console.
+     */
+    public static void detach() {
+        SESSION_IN.remove();
+        SESSION_OUT.remove();
+    }
+
+    /**
+     * Input of one session, handed out at most one line per read
+     */
+    private static class LineInput extends InputStream {
+        private final InputStream in;
+
+        private LineInput(InputStream in) {
+            this.in = new BufferedInputStream(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int count = 0;
+            while (count < len) {
+                int next = in.read();
+                if (next < 0) {
+                    return count == 0 ? -1 : count;
+                }
+                b[off + count] = (byte) next;
+                count++;
+                if (next == '\n') {
+                    break;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+    }
+
+    /**
+     * System.in, reading from the current session or the real console
+     */
+    private static class RoutedInput extends InputStream {
+        private InputStream current() {
+            InputStream in = SESSION_IN.get();
+            return in != null ? in : consoleIn;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return current().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return current().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return current().available();
+        }
+
+        @Override
+        public void close() {
+            // a Scanner that is closed must not close the console or a session
+        }
+    }
+
+    /**
+     * System.out, printing to the PrintStream of the current session or the real console. Every method is
+     * passed on without taking a lock of its own, so sessions only ever wait on their own PrintStream.
+     */
+    private static class RoutedOutput extends PrintStream {
+        private RoutedOutput() {
+            super(consoleOut, true);
+        }
+
+        private PrintStream current() {
+            PrintStream out = SESSION_OUT.get();
+            return out != null ? out : consoleOut;
+        }
+
+        @Override
+        public void write(int b) {
+            current().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            current().write(b, off, len);
+        }
+
+        public void write(byte[] b) {
+            current().write(b, 0, b.length);
+        }
+
+        @Override
+        public void flush() {
+            current().flush();
+        }
+
+        @Override
+        public boolean checkError() {
+            return current().checkError();
+        }
+
+        @Override
+        public void print(boolean b) {
+            current().print(b);
+        }
+
+        @Override
+        public void print(char c) {
+            current().print(c);
+        }
+
+        @Override
+        public void print(int i) {
+            current().print(i);
+        }
+
+        @Override
+        public void print(long l) {
+            current().print(l);
+        }
+
+        @Override
+        public void print(float f) {
+            current().print(f);
+        }
+
+        @Override
+        public void print(double d) {
+            current().print(d);
+        }
+
+        @Override
+        public void print(char[] s) {
+            current().print(s);
+        }
+
+        @Override
+        public void print(String s) {
+            current().print(s);
+        }
+
+        @Override
+        public void print(Object obj) {
+            current().print(obj);
+        }
+
+        @Override
+        public void println() {
+            current().println();
+        }
+
+        @Override
+        public void println(boolean x) {
+            current().println(x);
+        }
+
+        @Override
+        public void println(char x) {
+            current().println(x);
+        }
+
+        @Override
+        public void println(int x) {
+            current().println(x);
+        }
+
+        @Override
+        public void println(long x) {
+            current().println(x);
+        }
+
+        @Override
+        public void println(float x) {
+            current().println(x);
+        }
+
+        @Override
+        public void println(double x) {
+            current().println(x);
+        }
+
+        @Override
+        public void println(char[] x) {
+            current().println(x);
+        }
+
+        @Override
+        public void println(String x) {
+            current().println(x);
+        }
+
+        @Override
+        public void println(Object x) {
+            current().println(x);
+        }
+
+        @Override
+        public PrintStream printf(String format, Object... args) {
+            current().printf(format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream printf(Locale l, String format, Object... args) {
+            current().printf(l, format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream format(String format, Object... args) {
+            current().format(format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream format(Locale l, String format, Object... args) {
+            current().format(l, format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream append(CharSequence csq) {
+            current().append(csq);
+            return this;
+        }
+
+        @Override
+        public PrintStream append(CharSequence csq, int start, int end) {
+            current().append(csq, start, end);
+            return this;
+        }
+
+        @Override
+        public PrintStream append(char c) {
+            current().append(c);
+            return this;
+        }
+
+        @Override
+        public void close() {
+            // the sessions are closed by the SessionServer
+        }
+    }
+}
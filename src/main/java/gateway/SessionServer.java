@@ -0,0 +1,96 @@
+package gateway;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SessionServer Class serves the conference over plain TCP, e.g. with telnet or nc.
+ * Every connection is one session, run on its own thread from a pool that reuses idle threads, with its
+ * System.in and System.out routed to the connection by the SessionConsole. Every session runs the same
+ * session flow against the managers it was given, so they are shared rather than loaded per login.
+ *
+ * @version 1.0
+ */
+public class SessionServer {
+
+    private final int port;
+    private final Runnable session;
+    private ExecutorService sessions;
+    private ServerSocket server;
+
+    /**
+     * Constructor of the SessionServer Class.
+     *
+     * @param port    the TCP port to listen on, 0 for any free port
+     * @param session the flow of one session, e.g. logging in and running the menus until the user quits
+     */
+    public SessionServer(int port, Runnable session) {
+        this.port = port;
+        this.session = session;
+    }
+
+    /**
+     * Starts listening. Sessions are only accepted once serve is called.
+     *
+     * @return the port the server listens on
+     * @throws IOException if the port cannot be listened on
+     */
+    public int start() throws IOException {
+        SessionConsole.install();
+        server = new ServerSocket(port);
+        sessions = Executors.newCachedThreadPool();
+        return server.getLocalPort();
+    }
+
+    /**
+     * Accepts connections and runs a session for each of them until the server is stopped.
+     */
+    public void serve() {
+        while (!server.isClosed()) {
+            try {
+                Socket connection = server.accept();
+                sessions.execute(() -> runSession(connection));
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    // Private helper function
+    // Runs the session flow with the thread's console routed to the connection
+    private void runSession(Socket connection) {
+        try (Socket socket = connection) {
+            // unbuffered, so prompts printed without a newline reach the user
+            SessionConsole.attach(socket.getInputStream(), socket.getOutputStream());
+            session.run();
+        } catch (NoSuchElementException e) {
+            // the connection was closed in the middle of the session
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            SessionConsole.detach();
+        }
+    }
+
+    /**
+     * Stops accepting connections and waits for the running sessions to finish.
+     *
+     * @param timeoutSeconds how long to wait for the sessions
+     */
+    public void stop(long timeoutSeconds) {
+        try {
+            server.close();
+            sessions.shutdown();
+            sessions.awaitTermination(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+}
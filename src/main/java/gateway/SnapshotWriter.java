@@ -0,0 +1,149 @@
+package gateway;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The SnapshotWriter Class folds the journal into the snapshots on its own thread, so the sessions never
+ * wait for the disk. It is given snapshots that were already encoded into memory, together with the
+ * journal whose records they hold, which was rotated at the same moment. Only the snapshots of managers
+ * that changed are given, the other snapshot files already hold every record of the rotated segment.
+ *
+ * The snapshots are written to temporary files and forced onto the disk first. Then the rotated segment
+ * of the journal is marked as folded, and the temporary files are moved over the snapshots. A crash before
+ * the mark leaves the old snapshots and the rotated segment, a crash after it is finished by recover.
+ * A fold that fails is reported and leaves the same state as the crash would, so nothing is lost.
+ *
+ * @version 1.0
+ */
+public class SnapshotWriter {
+
+    public static final String EVENTS = "eventManager.bin";
+    public static final String USERS = "userManager.bin";
+    public static final String MESSAGES = "messageManager.bin";
+
+    private final String directory;
+    private final MutationLog journal;
+    private final BinarySnapshot snapshot = new BinarySnapshot();
+    private final ExecutorService writer;
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    /**
+     * Constructor of the SnapshotWriter Class.
+     *
+     * @param directory the directory the snapshot files are stored in
+     * @param journal   the journal that is folded into the snapshots
+     */
+    public SnapshotWriter(String directory, MutationLog journal) {
+        this.directory = directory;
+        this.journal = journal;
+        this.writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Finishes a fold that was interrupted, or throws away the temporary files of one that never got to
+     * the mark. Must be called before the snapshots are read.
+     */
+    public void recover() {
+        boolean folded = journal.isFolded();
+        boolean installed = true;
+        String[] names = new File(directory).list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.endsWith(".bin.tmp")) {
+                    String file = directory + name.substring(0, name.length() - ".tmp".length());
+                    if (folded) {
+                        installed = snapshot.install(file) && installed;
+                    } else {
+                        snapshot.discard(file);
+                    }
+                }
+            }
+        }
+        if (installed) {
+            // otherwise the folded segment is kept, it holds the records the old snapshots are missing
+            journal.deleteFolded();
+        }
+    }
+
+    /**
+     * Returns whether a fold is still being written.
+     *
+     * @return true if the writer is busy
+     */
+    public boolean isWriting() {
+        return writing.get();
+    }
+
+    /**
+     * Queues the snapshots to be written and the rotated segment to be folded into them.
+     *
+     * @param images   the encoded snapshots that changed, by file name (EVENTS, USERS, MESSAGES or a segment file)
+     * @param onFolded run once the snapshots are in place, not run if the fold failed
+     * @return false if an earlier fold is still being written, the rotated segment is then kept for later
+     */
+    public boolean write(Map<String, byte[]> images, Runnable onFolded) {
+        if (!writing.compareAndSet(false, true)) {
+            return false;
+        }
+        writer.execute(() -> {
+            try {
+                if (fold(images)) {
+                    onFolded.run();
+                }
+            } finally {
+                writing.set(false);
+            }
+        });
+        return true;
+    }
+
+    // Private helper function
+    // Writes the snapshots, marks the segment as folded and moves the snapshots into place
+    private boolean fold(Map<String, byte[]> images) {
+        boolean written = true;
+        for (Map.Entry<String, byte[]> image : images.entrySet()) {
+            written = written && snapshot.writeTemp(directory + image.getKey(), image.getValue());
+        }
+        if (!written || !journal.fold()) {
+            // the rotated segment stays, and is folded by the next write
+            for (String file : images.keySet()) {
+                snapshot.discard(directory + file);
+            }
+            new IOException("Snapshots not written, the journal is kept for the next fold").printStackTrace();
+            return false;
+        }
+        boolean installed = true;
+        for (String file : images.keySet()) {
+            installed = snapshot.install(directory + file) && installed;
+        }
+        if (!installed) {
+            // the folded segment and the temporary files stay, and are finished by recover
+            new IOException("Snapshots not moved into place, they are installed at the next start").printStackTrace();
+            return false;
+        }
+        journal.deleteFolded();
+        return true;
+    }
+
+    /**
+     * Waits for the queued fold to be written and stops the writer thread.
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+}
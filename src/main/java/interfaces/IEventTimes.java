@@ -0,0 +1,15 @@
+package interfaces;
+
+/**
+ * Interface that is implemented by classes that know when events take place.
+ * The schedules of Users only keep the start time and the ID of each event, so the end time is looked up
+ * when a User is checked for an event that overlaps another.
+ */
+public interface IEventTimes {
+
+    /**
+     * @param eventID the event ID of an event
+     * @return the end time of the event, 0 if there is no such event
+     */
+    int getEndTime(String eventID);
+}
@@ -0,0 +1,63 @@
+package interfaces;
+
+/**
+ * Interface that is implemented by journals that record changes made through the Manager classes
+ */
+public interface IJournal {
+
+    // Record types, one for each mutating Manager method
+    // SEND_MESSAGE and BROADCAST_MESSAGE are replaced by the numbered records and only replayed from older journals
+    // BROADCAST_NUMBERED_MESSAGE is replaced by BROADCAST_CUTOFF_MESSAGE and only replayed from older journals
+    byte SEND_MESSAGE = 1;
+    byte ACCEPT_REQUEST = 2;
+    byte ADD_EVENT = 3;
+    byte DEL_EVENT = 4;
+    byte ADD_ATTENDEE = 5;
+    byte REMOVE_ATTENDEE = 6;
+    byte ADD_SPEAKER = 7;
+    byte SET_TYPE = 8;
+    byte SET_CAPACITY = 9;
+    byte ADD_ROOM = 10;
+    byte NEW_ATTENDEE = 11;
+    byte NEW_VIP = 12;
+    byte NEW_ORGANIZER = 13;
+    byte NEW_SPEAKER = 14;
+    byte ADD_CONTACTS = 15;
+    byte REMOVE_CONTACTS = 16;
+    byte ADD_USER_EVENT = 17;
+    byte REMOVE_USER_EVENT = 18;
+    byte ADD_SPEAKER_EVENT = 19;
+    byte REMOVE_SPEAKER_EVENT = 20;
+    byte BROADCAST_MESSAGE = 21;
+    byte JOIN_WAITLIST = 22;
+    byte LEAVE_WAITLIST = 23;
+    byte RESERVE_MESSAGE_IDS = 24;
+    byte SEND_NUMBERED_MESSAGE = 25;
+    byte BROADCAST_NUMBERED_MESSAGE = 26;
+    byte BROADCAST_CUTOFF_MESSAGE = 27;
+
+    /**
+     * Records a single change made through a Manager
+     *
+     * @param type   The record type, one of the constants above
+     * @param fields The arguments of the change, in the order the Manager method takes them
+     */
+    void record(byte type, String... fields);
+
+    /**
+     * Forces the changes recorded so far onto the disk
+     */
+    void sync();
+
+    /**
+     * Enters a change made through a Manager. Changes can be made at the same time, but the journal is only
+     * cut for a snapshot between changes, so the records of a change are never split from its effect.
+     * Must be called before the Manager takes any of its locks, and be matched by endChange
+     */
+    void beginChange();
+
+    /**
+     * Leaves a change entered by beginChange
+     */
+    void endChange();
+}
@@ -6,4 +6,12 @@ package interfaces;
  * @author Ryan Wang
  */
 public interface IManager {
+
+    /**
+     * Counts every change made through the manager, including changes replayed from the journal,
+     * so that a saved copy of the manager can tell whether it is still up to date.
+     *
+     * @return the number of changes made since the manager was created
+     */
+    long getChangeCount();
 }
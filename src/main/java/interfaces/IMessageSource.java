@@ -0,0 +1,73 @@
+package interfaces;
+
+import message.Message;
+
+import java.util.List;
+
+/**
+ * Interface that is implemented by on-disk message stores that the MessageManager pages messages in from.
+ * Messages are stored in slots, sorted by message ID.
+ */
+public interface IMessageSource {
+
+    /**
+     * @return the number of messages in the store
+     */
+    int size();
+
+    /**
+     * @param slot the position of a message in the store
+     * @return the message ID stored in the slot
+     */
+    int getID(int slot);
+
+    /**
+     * @param messageID the ID of a message
+     * @return the slot the message is stored in, -1 if it is not in the store
+     */
+    int find(int messageID);
+
+    /**
+     * @param slot the position of a message in the store
+     * @return the username of the sender, without loading the message body
+     */
+    String getSender(int slot);
+
+    /**
+     * @param slot the position of a message in the store
+     * @return the usernames of the recipients, without loading the message body
+     */
+    List<String> getRecipients(int slot);
+
+    /**
+     * @param slot the position of a message in the store
+     * @return the recipient group of a broadcast message, null if the message has a list of recipients
+     */
+    String getGroup(int slot);
+
+    /**
+     * @param slot the position of a message in the store
+     * @return the membership cut-off of a broadcast message, see IRecipientGroups.getCutoff
+     */
+    int getCutoff(int slot);
+
+    /**
+     * @param slot the position of a message in the store
+     * @return the isRequest state of the stored message
+     */
+    boolean isRequest(int slot);
+
+    /**
+     * @param slot the position of a message in the store
+     * @return the isAccepted state of the stored message
+     */
+    boolean isAccepted(int slot);
+
+    /**
+     * Reads a whole message, including its body, from the store
+     *
+     * @param slot the position of a message in the store
+     * @return a new Message holding the stored message
+     */
+    Message load(int slot);
+}
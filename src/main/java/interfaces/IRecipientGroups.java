@@ -0,0 +1,36 @@
+package interfaces;
+
+/**
+ * Interface that is implemented by classes that know which Users belong to a recipient group.
+ * Broadcast messages are sent to a group rather than a list of usernames, and the group is only
+ * resolved when a User reads their inbox. A broadcast records the cut-off of the Users created when it
+ * was sent, so it only reaches the members of the group at the time it was sent.
+ */
+public interface IRecipientGroups {
+
+    // Recipient groups of broadcast messages
+    String EVERYONE = "Everyone";
+    String ATTENDEES = "Attendee";
+    String VIPS = "VIP";
+    String SPEAKERS = "Speaker";
+    String ORGANIZERS = "Organizer";
+
+    /**
+     * @param group the recipient group of a broadcast message
+     * @param username the username of a User
+     * @return true if the User is currently in the group
+     */
+    boolean isInGroup(String group, String username);
+
+    /**
+     * @return the membership cut-off a broadcast sent now records, after every User created so far
+     */
+    int getCutoff();
+
+    /**
+     * @param username the username of a User
+     * @return the position of the User in the order Users were created, a broadcast reaches the User only
+     * if its cut-off is after it
+     */
+    int getSequence(String username);
+}
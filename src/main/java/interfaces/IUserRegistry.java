@@ -0,0 +1,26 @@
+package interfaces;
+
+/**
+ * Interface that is implemented by classes that give every username a dense int ID.
+ * Managers keep users in their collections by ID and turn IDs back into usernames at the UI boundary.
+ */
+public interface IUserRegistry {
+
+    /**
+     * @param username the username of a User
+     * @return the ID of the username, a new ID if it had none yet
+     */
+    int getUserID(String username);
+
+    /**
+     * @param userID an ID given out by getUserID
+     * @return the shared instance of the username with the ID, null if no username has it
+     */
+    String getUsername(int userID);
+
+    /**
+     * @param username the username of a User
+     * @return the shared instance of the username, or username itself if it has no ID
+     */
+    String canonical(String username);
+}
@@ -0,0 +1,22 @@
+package interfaces;
+
+/**
+ * Interface that is implemented by classes that move users off an event's waitlist.
+ * The EventManager calls it when a seat is freed, before the user is added to the event.
+ */
+public interface IWaitlistHandler {
+
+    /**
+     * @param userID the user ID of the user at the front of the waitlist
+     * @param eventID the event ID of the event with a free seat
+     * @return true if the user took the seat, false if the user is skipped (i.e. no longer available)
+     */
+    boolean promote(String userID, String eventID);
+
+    /**
+     * @param userID the user ID of the user that wishes to wait for a seat
+     * @param eventID the event ID of the event
+     * @return true if the user could take a seat in the event, i.e. is free at its time and allowed in
+     */
+    boolean isEligible(String userID, String eventID);
+}
@@ -11,6 +11,8 @@ import java.util.ArrayList;
 public class Message implements Serializable{
     private String senderUsername;
     private ArrayList<String> recipientUsernames;
+    private String recipientGroup;
+    private int cutoff;
     private String message;
     private boolean isRequest;
     private boolean isAccept;
@@ -31,6 +33,66 @@ public class Message implements Serializable{
         this.isAccept = false;
     }
 
+    /**
+     * Constructor for a broadcast Message, sent to a recipient group instead of a list of recipients
+     * The group is resolved when a User reads their inbox, so the Message does not store the recipients,
+     * only the membership cut-off of the Users the group had when it was sent
+     *
+     * @param sender String username for the sender
+     * @param group String recipient group, one of the groups in IRecipientGroups
+     * @param message String message content
+     * @param cutoff int membership cut-off, the Message reaches the Users of the group created before it
+     */
+    public Message(String sender, String group, String message, int cutoff){
+        this.senderUsername = sender;
+        this.recipientUsernames = new ArrayList<>();
+        this.recipientGroup = group;
+        this.cutoff = cutoff;
+        this.message = message;
+        this.isRequest = false;
+        this.isAccept = false;
+    }
+
+    /**
+     * Getter for the sender's username
+     * @return String username of the sender
+     */
+    public String getSenderUsername(){
+        return senderUsername;
+    }
+
+    /**
+     * Getter for the recipients' usernames
+     * @return ArrayList of String usernames of the recipients
+     */
+    public ArrayList<String> getRecipientUsernames(){
+        return recipientUsernames;
+    }
+
+    /**
+     * Getter for the recipient group of a broadcast Message
+     * @return String recipient group, null if the Message has a list of recipients
+     */
+    public String getRecipientGroup(){
+        return recipientGroup;
+    }
+
+    /**
+     * Getter for the membership cut-off of a broadcast Message
+     * @return int membership cut-off, see IRecipientGroups.getCutoff
+     */
+    public int getCutoff(){
+        return cutoff;
+    }
+
+    /**
+     * Getter for the message content
+     * @return String message content
+     */
+    public String getMessage(){
+        return message;
+    }
+
     /**
      * Getter for isRequest
      * @return boolean telling if the message is a request
@@ -63,6 +125,9 @@ public class Message implements Serializable{
     @Override
     public String toString(){
         if (!isAccept && !isRequest) {
+            if (recipientGroup != null) {
+                return senderUsername + ": " + message + " -> " + recipientGroup;
+            }
             return senderUsername + ": " + message + " -> " + recipientUsernames;
         }
         else if (isRequest){
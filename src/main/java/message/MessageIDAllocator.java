@@ -0,0 +1,115 @@
+package message;
+
+import interfaces.IJournal;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The MessageIDAllocator class gives out message IDs, each one once, in increasing order
+ *
+ * IDs are taken with an atomic counter, so no lock is needed to take one. Before an ID past the reserved
+ * block is given out, the next block of BLOCK_SIZE IDs is recorded to the journal and forced onto the disk.
+ * After a crash the journal is replayed up to at least that reservation, so IDs that may already have
+ * been shown to a User are never given to another message, even if the message itself was lost. IDs of
+ * dropped or archived messages are never given out again either, since the counter only moves forward.
+ *
+ * @version 1.0
+ */
+public class MessageIDAllocator implements Serializable {
+
+    // Number of IDs reserved in the journal at a time
+    public static final int BLOCK_SIZE = 1024;
+
+    private final AtomicInteger next;
+    private volatile int reserved;
+    private transient IJournal journal;
+
+    /**
+     * Constructor for MessageIDAllocator
+     *
+     * @param next The high-water mark, i.e. the ID after the last ID that was given out
+     */
+    public MessageIDAllocator(int next){
+        this.next = new AtomicInteger(next);
+        this.reserved = next;
+    }
+
+    /**
+     * Sets the journal that reserved blocks of IDs are recorded to
+     *
+     * @param journal The journal to record to, null to stop recording
+     */
+    public void setJournal(IJournal journal){
+        this.journal = journal;
+    }
+
+    /**
+     * Gives out the next ID
+     *
+     * @return int ID that was never given out before
+     */
+    public int allocate(){
+        return reserve(1);
+    }
+
+    /**
+     * Gives out a block of consecutive IDs, e.g. for a batch of messages
+     *
+     * @param count The number of IDs
+     * @return int first ID of the block
+     */
+    public int reserve(int count){
+        int first = next.getAndAdd(count);
+        if (first + count > reserved) {
+            extendReservation(first + count);
+        }
+        return first;
+    }
+
+    /**
+     * Helper
+     * Records a reservation of the IDs up to at least end before any of them is given out
+     *
+     * @param end The ID after the last ID that must be reserved
+     */
+    private synchronized void extendReservation(int end){
+        if (end <= reserved) {
+            return;
+        }
+        int limit = end + BLOCK_SIZE;
+        if (journal != null) {
+            journal.record(IJournal.RESERVE_MESSAGE_IDS, Integer.toString(limit));
+            journal.sync();
+        }
+        reserved = limit;
+    }
+
+    /**
+     * Moves the high-water mark forward to an ID, used for IDs read back from the snapshot or the journal
+     *
+     * @param id The ID after the last ID that was given out
+     */
+    public void advanceTo(int id){
+        next.accumulateAndGet(id, Math::max);
+    }
+
+    /**
+     * Getter for the end of the reserved block, every ID given out so far or until the next reservation
+     * is below it
+     *
+     * @return int ID after the last reserved ID, at least the high-water mark
+     */
+    public int getReservedLimit(){
+        return Math.max(reserved, next.get());
+    }
+
+    /**
+     * Getter for the high-water mark
+     *
+     * @return int ID after the last ID that was given out
+     */
+    public int getHighWaterMark(){
+        return next.get();
+    }
+}
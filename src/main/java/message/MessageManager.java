@@ -2,34 +2,278 @@ package message;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import interfaces.IJournal;
 import interfaces.IManager;
+import interfaces.IMessageSource;
+import interfaces.IRecipientGroups;
+import interfaces.IUserRegistry;
 
 import java.io.Serializable;
 
 /**
  * The MessageManager class stores and modifies Message instances
  *
+ * Messages are stored in MessageSegments: the sealed segments, oldest first, and the active segment that
+ * new messages are added to. A segment is sealed at the end of its time bucket or once it is full, and
+ * sealed segments can be dropped or archived as a whole by a retention policy, so a long running conference
+ * does not keep every message it ever sent. Each segment has its own postings, so a User's inbox is the
+ * inbox of every segment in turn.
+ *
+ * Messages of stored segments stay on disk and are only read when they are looked up. Loaded messages are
+ * kept in a bounded LRU cache, so the heap holds the messages that are being read rather than the whole
+ * history.
+ *
+ * Broadcast messages are indexed by their recipient group instead of by recipient, so sending one costs
+ * the same for any number of recipients. A User's broadcasts are found when their inbox is read, and each
+ * broadcast records the membership cut-off of the Users created when it was sent, so it only reaches the
+ * Users who were in its group at that time.
+ *
+ * Every method that reads or changes the messages is synchronized, since even reads fill the cache,
+ * so one MessageManager can be shared by every session.
+ *
  * @author Ryan Wang
  * @version 1.0
  */
 public class MessageManager implements Serializable, IManager{
 
-    private HashMap<String, ArrayList<Integer>> messageSenders;
-    private HashMap<String, ArrayList<Integer>> messageRecipients;
-    private HashMap<Integer, Message> messageIDs;
+    private ArrayList<MessageSegment> segments;
+    private MessageSegment active;
+    private LinkedHashSet<Integer> pendingRequests;
+    private LinkedHashSet<Integer> acceptedRequests;
+    private HashMap<String, LinkedHashSet<Integer>> pendingBySender;
+    private HashMap<String, LinkedHashSet<Integer>> acceptedBySender;
+    private MessageIDAllocator ids;
+    private transient LinkedHashMap<Integer, Message> pageCache;
+    private transient IJournal journal;
+    private final AtomicLong changes = new AtomicLong();
+    private transient IRecipientGroups groups;
+    private transient IUserRegistry users;
+
+    private static final int PAGE_CACHE_SIZE = 1024;
 
     /**
      * Constructor for MessageManager
+     * The messages are put in segments of at most MessageSegment.MAX_MESSAGES, which rebuild the sender and
+     * recipient mappings
      *
      * @param senders HashMap mapping User senders to messageIDs
      * @param recipients HashMap mapping User recipients to messageIDs
      * @param messages HashMap mapping User messageIDs to messages
      */
-    public MessageManager(HashMap<String,ArrayList<Integer>> senders, HashMap<String,ArrayList<Integer>> recipients,
+    public MessageManager(HashMap<String,MessagePostings> senders, HashMap<String,MessagePostings> recipients,
                           HashMap<Integer,Message> messages){
-        this.messageSenders = senders; // Sender = msgID
-        this.messageRecipients = recipients; // Recipient = msgID
-        this.messageIDs = messages; // ID = Message
+        TreeSet<Integer> sorted = new TreeSet<>(messages.keySet());
+        long now = System.currentTimeMillis();
+        this.ids = new MessageIDAllocator(sorted.isEmpty() ? 0 : sorted.last() + 1);
+        this.segments = new ArrayList<>();
+        this.active = new MessageSegment(sorted.isEmpty() ? 0 : sorted.first(), now);
+        for (Integer id : sorted) {
+            if (active.size() >= MessageSegment.MAX_MESSAGES) {
+                active.seal(now);
+                segments.add(active);
+                active = new MessageSegment(id, now);
+            }
+            active.add(id, messages.get(id));
+        }
+        indexRequests();
+    }
+
+    /**
+     * Constructor for MessageManager, from the segments of a message store
+     * The pending and accepted requests are the ones stored with the segments, no message is read
+     *
+     * @param segments The sealed segments, oldest first
+     * @param active The segment new messages are added to
+     * @param nextID The high-water mark of the message IDs, i.e. the ID after the last ID given out
+     * @param pending LinkedHashMap of the IDs of the pending requests to their sender, see getRequestSenders
+     * @param accepted LinkedHashMap of the IDs of the accepted requests to their sender, see getRequestSenders
+     */
+    public MessageManager(ArrayList<MessageSegment> segments, MessageSegment active, int nextID,
+                          LinkedHashMap<Integer, String> pending, LinkedHashMap<Integer, String> accepted){
+        this.segments = segments;
+        this.active = active;
+        this.ids = new MessageIDAllocator(nextID);
+        this.pendingRequests = new LinkedHashSet<>();
+        this.acceptedRequests = new LinkedHashSet<>();
+        this.pendingBySender = new HashMap<>(); // Sender = pending request IDs
+        this.acceptedBySender = new HashMap<>(); // Sender = accepted request IDs
+        for (Map.Entry<Integer, String> request : pending.entrySet()) {
+            indexRequest(request.getKey(), request.getValue(), true, false);
+        }
+        for (Map.Entry<Integer, String> request : accepted.entrySet()) {
+            indexRequest(request.getKey(), request.getValue(), false, true);
+        }
+    }
+
+    /**
+     * Helper
+     * Rebuilds the pending and accepted requests from every segment, only used for messages on the heap
+     */
+    private void indexRequests(){
+        this.pendingRequests = new LinkedHashSet<>();
+        this.acceptedRequests = new LinkedHashSet<>();
+        this.pendingBySender = new HashMap<>(); // Sender = pending request IDs
+        this.acceptedBySender = new HashMap<>(); // Sender = accepted request IDs
+        for (MessageSegment segment : getAllSegments()) {
+            for (Integer id : segment.getMessageIDs()) {
+                if (segment.isRequest(id) || segment.isAccepted(id)) {
+                    indexRequest(id, segment.getSender(id), segment.isRequest(id), segment.isAccepted(id));
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper
+     * Returns the sealed segments followed by the active segment
+     *
+     * @return ArrayList of every MessageSegment, in order of message ID
+     */
+    private ArrayList<MessageSegment> getAllSegments(){
+        ArrayList<MessageSegment> all = new ArrayList<>(segments.size() + 1);
+        all.addAll(segments);
+        all.add(active);
+        return all;
+    }
+
+    /**
+     * Helper
+     * Returns the segment a message is stored in
+     *
+     * @param messageID The ID of the message
+     * @return MessageSegment holding the message, null if the message was dropped or never sent
+     */
+    private MessageSegment getSegment(int messageID){
+        if (messageID >= active.getFirstID()) {
+            return active.contains(messageID) ? active : null;
+        }
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            MessageSegment segment = segments.get(middle);
+            if (messageID < segment.getFirstID()) {
+                high = middle - 1;
+            } else if (messageID >= segment.getEndID()) {
+                low = middle + 1;
+            } else {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper
+     * Returns the segment to add a new message to, sealing the active segment if its bucket is over or it is full
+     *
+     * @param id The ID of the message being added
+     * @return MessageSegment that is active
+     */
+    private MessageSegment openSegment(int id){
+        long now = System.currentTimeMillis();
+        if (active.isFull(now)) {
+            if (active.size() > 0) {
+                active.seal(now);
+                segments.add(active);
+            }
+            active = new MessageSegment(id, now);
+        }
+        return active;
+    }
+
+    /**
+     * Helper
+     * Adds a message to the pending or accepted requests, overall and of its sender, if it is a request
+     *
+     * @param messageID Integer referring to the ID of the message
+     * @param sender The username of the sender
+     * @param isRequest boolean telling if the message is a pending request
+     * @param isAccepted boolean telling if the message is an accepted request
+     */
+    private void indexRequest(Integer messageID, String sender, boolean isRequest, boolean isAccepted){
+        if (isRequest) {
+            pendingRequests.add(messageID);
+            if (!pendingBySender.containsKey(sender)) {
+                pendingBySender.put(sender, new LinkedHashSet<>());
+            }
+            pendingBySender.get(sender).add(messageID);
+        } else if (isAccepted) {
+            acceptedRequests.add(messageID);
+            if (!acceptedBySender.containsKey(sender)) {
+                acceptedBySender.put(sender, new LinkedHashSet<>());
+            }
+            acceptedBySender.get(sender).add(messageID);
+        }
+    }
+
+    /**
+     * Sets the journal that every sent message and accepted request is recorded to
+     *
+     * @param journal The journal to record to, null to stop recording
+     */
+    public void setJournal(IJournal journal){
+        this.journal = journal;
+        ids.setJournal(journal);
+    }
+
+    /**
+     * Returns the number of changes made through this MessageManager, see IManager
+     *
+     * @return The number of changes made since this MessageManager was created
+     */
+    @Override
+    public long getChangeCount() {
+        return changes.get();
+    }
+
+    /**
+     * Sets the recipient groups that broadcast messages are resolved against when an inbox is read
+     *
+     * @param groups The recipient groups, null to leave broadcasts out of inboxes
+     */
+    public void setRecipientGroups(IRecipientGroups groups){
+        this.groups = groups;
+    }
+
+    /**
+     * Helper
+     * Enters a change if a journal is set, see IJournal.beginChange
+     *
+     * @return IJournal the journal the change was entered in, to be passed to endChange
+     */
+    private IJournal beginChange(){
+        IJournal entered = journal;
+        if (entered != null) {
+            entered.beginChange();
+        }
+        return entered;
+    }
+
+    /**
+     * Helper
+     * Leaves a change entered by beginChange
+     *
+     * @param entered The journal returned by beginChange
+     */
+    private static void endChange(IJournal entered){
+        if (entered != null) {
+            entered.endChange();
+        }
+    }
+
+    /**
+     * Sets the registry of users, so new messages store the shared instance of each username
+     *
+     * @param users The registry of users, null to store usernames as they are given
+     */
+    public void setUserRegistry(IUserRegistry users){
+        this.users = users;
     }
 
     /**
@@ -41,52 +285,198 @@ public class MessageManager implements Serializable, IManager{
      * @param isRequest boolean telling if the message is a request
      */
     public void sendMessage(String sender, ArrayList<String> recipients, String message, boolean isRequest){
+        IJournal change = beginChange();
+        try {
+            synchronized (this) {
+                if(!recipients.isEmpty()) {
+                    deliver(ids.allocate(), sender, recipients, message, isRequest);
+                }
+            }
+        } finally {
+            endChange(change);
+        }
+    }
+
+    /**
+     * Puts back a Message that was sent with a given ID, used when the journal is replayed
+     *
+     * @param messageID The ID the message was sent with
+     * @param sender The User that sent the message
+     * @param recipients The ArrayList of User that received the message
+     * @param message The String message that was sent
+     * @param isRequest boolean telling if the message is a request
+     */
+    public void restoreMessage(int messageID, String sender, ArrayList<String> recipients,
+                               String message, boolean isRequest){
+        IJournal change = beginChange();
+        try {
+            synchronized (this) {
+                ids.advanceTo(messageID + 1);
+                deliver(messageID, sender, recipients, message, isRequest);
+            }
+        } finally {
+            endChange(change);
+        }
+    }
+
+    /**
+     * Helper
+     * Adds a Message with its ID to the active segment, mapping it to the sender and recipients, and records it
+     *
+     * @param id The ID of the message
+     * @param sender The User that sends the message
+     * @param recipients The ArrayList of User that receives the message
+     * @param message The String message being sent
+     * @param isRequest boolean telling if the message is a request
+     */
+    private void deliver(int id, String sender, ArrayList<String> recipients, String message, boolean isRequest){
+        if (users != null) {
+            sender = users.canonical(sender);
+            ArrayList<String> shared = new ArrayList<>(recipients.size());
+            for (int i = 0; i < recipients.size(); i++) {
+                shared.add(users.canonical(recipients.get(i)));
+            }
+            recipients = shared;
+        }
 
-        if(!recipients.isEmpty()) {
-            // Initializing a new Message
+        // Initializing a new Message
 
-            Message newMessage = new Message(sender, recipients, message, isRequest);
+        Message newMessage = new Message(sender, recipients, message, isRequest);
+        openSegment(id).add(id, newMessage);
 
-            // Creating the Message ID
-            ArrayList<Integer> val = new ArrayList<>();
-            val.add(messageIDs.size());
+        indexRequest(id, sender, isRequest, false);
 
-            if(recipients.size()==3){
-                System.out.println("WW");
+        changes.incrementAndGet();
+        if (journal != null) {
+            String[] fields = new String[4 + recipients.size()];
+            fields[0] = Integer.toString(id);
+            fields[1] = sender;
+            fields[2] = message;
+            fields[3] = Boolean.toString(isRequest);
+            for (int i = 0; i < recipients.size(); i++) {
+                fields[4 + i] = recipients.get(i);
             }
+            journal.record(IJournal.SEND_NUMBERED_MESSAGE, fields);
+        }
+    }
 
-            messageIDs.put(messageIDs.size(), newMessage); // ID = Message
-            // Mapping the message ID to a sender
-            if (!messageSenders.containsKey(sender)) {
-                messageSenders.put(sender, val);
-            } else {
-                messageSenders.get(sender).add(val.get(0));
+    /**
+     * Sends a broadcast Message from a given User to a recipient group
+     * Only the group and its membership cut-off are stored, the group is resolved to the Users it had
+     * when the Message was sent when they read their inbox
+     *
+     * @param sender The User that sends the message
+     * @param group The recipient group, one of the groups in IRecipientGroups
+     * @param message The String message being sent
+     */
+    public void sendBroadcast(String sender, String group, String message){
+        IJournal change = beginChange();
+        try {
+            synchronized (this) {
+                broadcast(ids.allocate(), sender, group, cutoff(), message);
             }
+        } finally {
+            endChange(change);
+        }
+    }
 
-            // Mapping message ID to the recipients
-            for (String recipient : recipients) {
-                if (!messageRecipients.containsKey(recipient)) {
-                    ArrayList<Integer> val2 = new ArrayList<>();
-                    val2.add(messageIDs.size()-1);
-                    messageRecipients.put(recipient, val2);
-                } else {
-                    messageRecipients.get(recipient).add(val.get(0));
-                }
+    /**
+     * Puts back a broadcast Message that was sent with a given ID by an older journal, which did not record
+     * the cut-off. The journal creates the Users in the order they were created, so the cut-off is taken
+     * from the Users created so far.
+     *
+     * @param messageID The ID the message was sent with
+     * @param sender The User that sent the message
+     * @param group The recipient group, one of the groups in IRecipientGroups
+     * @param message The String message that was sent
+     */
+    public void restoreBroadcast(int messageID, String sender, String group, String message){
+        IJournal change = beginChange();
+        try {
+            synchronized (this) {
+                ids.advanceTo(messageID + 1);
+                broadcast(messageID, sender, group, cutoff(), message);
+            }
+        } finally {
+            endChange(change);
+        }
+    }
+
+    /**
+     * Puts back a broadcast Message that was sent with a given ID, used when the journal is replayed
+     *
+     * @param messageID The ID the message was sent with
+     * @param sender The User that sent the message
+     * @param group The recipient group, one of the groups in IRecipientGroups
+     * @param cutoff The membership cut-off the message was sent with
+     * @param message The String message that was sent
+     */
+    public void restoreBroadcast(int messageID, String sender, String group, int cutoff, String message){
+        IJournal change = beginChange();
+        try {
+            synchronized (this) {
+                ids.advanceTo(messageID + 1);
+                broadcast(messageID, sender, group, cutoff, message);
             }
+        } finally {
+            endChange(change);
+        }
+    }
+
+    /**
+     * Helper
+     * Returns the membership cut-off of a broadcast sent now
+     *
+     * @return int membership cut-off, after every User if the recipient groups are not set
+     */
+    private int cutoff(){
+        return groups != null ? groups.getCutoff() : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Helper
+     * Adds a broadcast Message with its ID to the active segment and records it
+     *
+     * @param id The ID of the message
+     * @param sender The User that sends the message
+     * @param group The recipient group, one of the groups in IRecipientGroups
+     * @param cutoff The membership cut-off of the message
+     * @param message The String message being sent
+     */
+    private void broadcast(int id, String sender, String group, int cutoff, String message){
+        openSegment(id).add(id, new Message(sender, group, message, cutoff));
+
+        changes.incrementAndGet();
+        if (journal != null) {
+            journal.record(IJournal.BROADCAST_CUTOFF_MESSAGE, Integer.toString(id), sender, group,
+                    Integer.toString(cutoff), message);
         }
     }
 
+    /**
+     * Moves the message IDs past a block that was reserved before the program stopped, used when the
+     * journal is replayed, so IDs that may have been given out are not given out again
+     *
+     * @param limit The ID after the reserved block
+     */
+    public synchronized void restoreIDReservation(int limit){
+        ids.advanceTo(limit);
+    }
+
     /**
      * Gets a list of messages that User has sent
      *
      * @param account User that wants to see sent messages
      * @return ArrayList of Message of Message classes that a User has sent
      */
-    public ArrayList<Message> getUserSent(String account){
+    public synchronized ArrayList<Message> getUserSent(String account){
         ArrayList<Message> messageList = new ArrayList<>();
-        if(messageSenders.containsKey(account)) {
-            for (Integer i : messageSenders.get(account)) {
-                messageList.add(messageIDs.get(i));
+        for (MessageSegment segment : getAllSegments()) {
+            MessagePostings sent = segment.getSent(account);
+            if (sent != null) {
+                for (int i = 0; i < sent.size(); i++) {
+                    messageList.add(getMessage(sent.get(i)));
+                }
             }
         }
         return messageList;
@@ -98,11 +488,42 @@ public class MessageManager implements Serializable, IManager{
      * @param account User that wants to see inbox
      * @return ArrayList of Message of Message classes that User has received
      */
-    public ArrayList<Message> getUserInbox(String account){
+    public synchronized ArrayList<Message> getUserInbox(String account){
         ArrayList<Message> messageList = new ArrayList<>();
-        if(messageRecipients.containsKey(account)) { // check if an account has been sent a message
-            for (Integer i : messageRecipients.get(account)) { // each message ID in account's received messages
-                messageList.add(messageIDs.get(i));
+        int sequence = groups != null ? groups.getSequence(account) : 0;
+        for (MessageSegment segment : getAllSegments()) {
+            // The messages sent to the account and the broadcasts of every group the account is in
+            ArrayList<MessagePostings> received = new ArrayList<>();
+            if (segment.getReceived(account) != null) {
+                received.add(segment.getReceived(account));
+            }
+            int broadcasts = received.size();
+            if (groups != null) {
+                for (Map.Entry<String, MessagePostings> group : segment.getBroadcasts().entrySet()) {
+                    if (groups.isInGroup(group.getKey(), account)) {
+                        received.add(group.getValue());
+                    }
+                }
+            }
+            // Merging the postings, which are each in order of message ID, so the inbox is in the order it was sent
+            // A broadcast is left out if the account was created after it was sent
+            int[] next = new int[received.size()];
+            while (true) {
+                int first = -1;
+                for (int i = 0; i < next.length; i++) {
+                    if (next[i] < received.get(i).size() && (first < 0
+                            || received.get(i).get(next[i]) < received.get(first).get(next[first]))) {
+                        first = i;
+                    }
+                }
+                if (first < 0) {
+                    break;
+                }
+                int messageID = received.get(first).get(next[first]);
+                next[first]++;
+                if (first < broadcasts || sequence < segment.getCutoff(messageID)) {
+                    messageList.add(getMessage(messageID));
+                }
             }
         }
         return messageList;
@@ -114,8 +535,9 @@ public class MessageManager implements Serializable, IManager{
      *
      * @return boolean corresponding to the isRequest state of the message
      */
-    public boolean isRequest(Integer messageID){
-        return messageIDs.get(messageID).isRequest();
+    public synchronized boolean isRequest(Integer messageID){
+        MessageSegment segment = getSegment(messageID);
+        return segment != null && segment.isRequest(messageID);
     }
 
     /**
@@ -124,18 +546,141 @@ public class MessageManager implements Serializable, IManager{
      *
      * @return boolean corresponding to the isAccept state of the message
      */
-    public boolean isAccepted(Integer messageID){
-        return messageIDs.get(messageID).isAccepted();
+    public synchronized boolean isAccepted(Integer messageID){
+        MessageSegment segment = getSegment(messageID);
+        return segment != null && segment.isAccepted(messageID);
     }
 
     /**
      * Getter for a specific message
      *
      * @param messageID Integer corresponding to the messageID
-     * @return Message that corresponds to the messageID
+     * @return Message that corresponds to the messageID, null if it was dropped or never sent
+     */
+    public synchronized Message getMessage(Integer messageID){
+        MessageSegment segment = getSegment(messageID);
+        if (segment == null) {
+            return null;
+        }
+        Message message = segment.getLoadedMessage(messageID);
+        if (message == null) {
+            if (pageCache == null) {
+                pageCache = new LinkedHashMap<Integer, Message>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Integer, Message> eldest) {
+                        return size() > PAGE_CACHE_SIZE;
+                    }
+                };
+            }
+            message = pageCache.get(messageID);
+            if (message == null) {
+                message = segment.getMessage(messageID);
+                if (message != null) {
+                    pageCache.put(messageID, message);
+                }
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Getter for the IDs of all messages, in the order they were sent
+     *
+     * @return ArrayList of type Integer referring to the IDs of every message
+     */
+    public synchronized ArrayList<Integer> getMessageIDs(){
+        ArrayList<Integer> ids = new ArrayList<>();
+        for (MessageSegment segment : getAllSegments()) {
+            ids.addAll(segment.getMessageIDs());
+        }
+        return ids;
+    }
+
+    /**
+     * Getter for the sealed segments, oldest first
+     *
+     * @return ArrayList of the sealed MessageSegments
+     */
+    public synchronized ArrayList<MessageSegment> getSegments(){
+        return new ArrayList<>(segments);
+    }
+
+    /**
+     * Records that a sealed segment was stored, see MessageSegment.setStored
+     *
+     * @param segment The stored MessageSegment
+     * @param changeCount The change count of the segment when it was encoded
+     * @param stored The stored copy of the segment, null to keep its messages where they are
+     */
+    public synchronized void setStored(MessageSegment segment, long changeCount, IMessageSource stored){
+        segment.setStored(changeCount, stored);
+    }
+
+    /**
+     * Getter for the segment new messages are added to
+     *
+     * @return MessageSegment that is active
+     */
+    public synchronized MessageSegment getActiveSegment(){
+        return active;
+    }
+
+    /**
+     * Getter for the high-water mark of the message IDs, the next message gets this ID or a later one
+     *
+     * @return int ID after the last ID given out
+     */
+    public synchronized int getNextID(){
+        return ids.getHighWaterMark();
+    }
+
+    /**
+     * Getter for the end of the block of message IDs reserved in the journal, see MessageIDAllocator
+     *
+     * @return int ID after the last reserved ID
+     */
+    public synchronized int getReservedID(){
+        return ids.getReservedLimit();
+    }
+
+    /**
+     * Checks if the oldest sealed segment can be dropped by dropSegmentsBefore
+     *
+     * @param cutoff The time in milliseconds before which segments expire
+     * @return true if there is a stored segment sealed before the cutoff
+     */
+    public synchronized boolean hasSegmentsBefore(long cutoff){
+        return !segments.isEmpty() && segments.get(0).isStored() && segments.get(0).getSealed() < cutoff;
+    }
+
+    /**
+     * Drops the oldest sealed segments that were sealed before a cutoff, together with their messages
+     * Only segments that are stored are dropped, so a segment can always be archived from its stored copy
+     *
+     * @param cutoff The time in milliseconds before which segments expire
+     * @return ArrayList of the dropped MessageSegments, oldest first
      */
-    public Message getMessage(Integer messageID){
-        return messageIDs.get(messageID);
+    public synchronized ArrayList<MessageSegment> dropSegmentsBefore(long cutoff){
+        ArrayList<MessageSegment> dropped = new ArrayList<>();
+        while (hasSegmentsBefore(cutoff)) {
+            MessageSegment segment = segments.remove(0);
+            pendingRequests.removeIf(segment::contains);
+            acceptedRequests.removeIf(segment::contains);
+            for (LinkedHashSet<Integer> requests : pendingBySender.values()) {
+                requests.removeIf(segment::contains);
+            }
+            for (LinkedHashSet<Integer> requests : acceptedBySender.values()) {
+                requests.removeIf(segment::contains);
+            }
+            if (pageCache != null) {
+                pageCache.keySet().removeIf(segment::contains);
+            }
+            dropped.add(segment);
+        }
+        if (!dropped.isEmpty()) {
+            changes.incrementAndGet();
+        }
+        return dropped;
     }
 
     /**
@@ -144,7 +689,31 @@ public class MessageManager implements Serializable, IManager{
      * @param messageID Integer referring to the ID of a request (Message)
      */
     public void acceptRequest(Integer messageID){
-        messageIDs.get(messageID).acceptRequest();
+        IJournal change = beginChange();
+        try {
+            synchronized (this) {
+                Message request = getMessage(messageID);
+                if (request == null) {
+                    return; // the request was dropped with its segment
+                }
+                request.acceptRequest();
+                getSegment(messageID).update(messageID, request); // keep the change on the heap until the segment is stored
+
+                // Moving the request from the pending requests to the accepted requests
+                String sender = request.getSenderUsername();
+                pendingRequests.remove(messageID);
+                if (pendingBySender.containsKey(sender)) {
+                    pendingBySender.get(sender).remove(messageID);
+                }
+                indexRequest(messageID, sender, false, true);
+                changes.incrementAndGet();
+                if (journal != null) {
+                    journal.record(IJournal.ACCEPT_REQUEST, messageID.toString());
+                }
+            }
+        } finally {
+            endChange(change);
+        }
     }
 
     /**
@@ -152,14 +721,8 @@ public class MessageManager implements Serializable, IManager{
      *
      * @return ArrayList of type Integer referring to the IDs of pending requests (Message)
      */
-    public ArrayList<Integer> getActiveRequests(){
-        ArrayList<Integer> requests = new ArrayList<>();
-        for(Integer id : messageIDs.keySet()){
-            if (isRequest(id)){
-                requests.add(id);
-            }
-        }
-        return requests;
+    public synchronized ArrayList<Integer> getActiveRequests(){
+        return new ArrayList<>(pendingRequests);
     }
 
     /**
@@ -167,30 +730,47 @@ public class MessageManager implements Serializable, IManager{
      *
      * @return ArrayList of type Message referring to IDs of accepted requests (Message)
      */
-    public ArrayList<Message> getAcceptedRequests(){
+    public synchronized ArrayList<Message> getAcceptedRequests(){
         ArrayList<Message> requests = new ArrayList<>();
-        for(Integer id : messageIDs.keySet()){
-            if(isAccepted(id)){
-                requests.add(getMessage(id));
-            }
+        for(Integer id : acceptedRequests){
+            requests.add(getMessage(id));
         }
         return requests;
     }
 
+    /**
+     * Getter for the senders of the pending or accepted requests, so the request index can be stored with
+     * the segments and does not have to be rebuilt from every message
+     *
+     * @param accepted true for the accepted requests, false for the pending requests
+     * @return LinkedHashMap of the IDs of the requests to the username of their sender, in request order
+     */
+    public synchronized LinkedHashMap<Integer, String> getRequestSenders(boolean accepted){
+        HashMap<Integer, String> senders = new HashMap<>();
+        for (Map.Entry<String, LinkedHashSet<Integer>> requests
+                : (accepted ? acceptedBySender : pendingBySender).entrySet()) {
+            for (Integer id : requests.getValue()) {
+                senders.put(id, requests.getKey());
+            }
+        }
+        LinkedHashMap<Integer, String> ordered = new LinkedHashMap<>();
+        for (Integer id : accepted ? acceptedRequests : pendingRequests) {
+            ordered.put(id, senders.get(id));
+        }
+        return ordered;
+    }
+
     /**
      * Getter for pending requests of a specific User
      *
      * @param username String referring to the User's username
      * @return ArrayList of type Integer referring to the IDs of User's pending outgoing requests (Message)
      */
-    public ArrayList<Integer> getUserPendingRequests(String username){
-        ArrayList<Integer> requests = new ArrayList<>();
-        for(Integer id : getActiveRequests()){
-            if(getUserSent(username).contains(getMessage(id))){
-                requests.add(id);
-            }
+    public synchronized ArrayList<Integer> getUserPendingRequests(String username){
+        if(!pendingBySender.containsKey(username)){
+            return new ArrayList<>();
         }
-        return requests;
+        return new ArrayList<>(pendingBySender.get(username));
     }
     /**
      * Getter for accepted requests of a specific User
@@ -198,11 +778,11 @@ public class MessageManager implements Serializable, IManager{
      * @param username String referring to the User's username
      * @return ArrayList of type Message referring to IDs of User's accepted Outgoing requests (Message)
      */
-    public ArrayList<Message> getUserAcceptedRequests(String username){
+    public synchronized ArrayList<Message> getUserAcceptedRequests(String username){
         ArrayList<Message> requests = new ArrayList<>();
-        for(Message request : getAcceptedRequests()){
-            if(getUserSent(username).contains(request)){
-                requests.add(request);
+        if(acceptedBySender.containsKey(username)){
+            for(Integer id : acceptedBySender.get(username)){
+                requests.add(getMessage(id));
             }
         }
         return requests;
@@ -0,0 +1,112 @@
+package message;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The MessagePostings class is the list of message IDs a User has sent or received
+ *
+ * The IDs are kept in a growable int array instead of an ArrayList of Integer, so adding an ID does not
+ * allocate a boxed Integer and a User's postings take 4 bytes per message. When serialized, the IDs are
+ * written as varint-encoded differences between neighbouring IDs, which are small since IDs are added
+ * in the order the messages are sent.
+ *
+ * @version 1.0
+ */
+public class MessagePostings implements Serializable {
+    private transient int[] ids;
+    private transient int size;
+
+    /**
+     * Constructor for MessagePostings, initializing an empty list
+     */
+    public MessagePostings(){
+        this.ids = new int[4];
+        this.size = 0;
+    }
+
+    /**
+     * Adds a message ID to the end of the list
+     *
+     * @param messageID The ID of the message
+     */
+    public void add(int messageID){
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size] = messageID;
+        size++;
+    }
+
+    /**
+     * Getter for the message ID at a position of the list
+     *
+     * @param index The position in the list
+     * @return int message ID at that position
+     */
+    public int get(int index){
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return ids[index];
+    }
+
+    /**
+     * Getter for the number of message IDs in the list
+     *
+     * @return int number of message IDs
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Writes the IDs as the count followed by varint-encoded differences
+     *
+     * @param out The stream to write to
+     * @throws IOException if the stream cannot be written to
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            int delta = ids[i] - previous;
+            while ((delta & ~0x7F) != 0) {
+                out.writeByte((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            out.writeByte(delta);
+            previous = ids[i];
+        }
+    }
+
+    /**
+     * Reads IDs written by writeObject
+     *
+     * @param in The stream to read from
+     * @throws IOException if the stream cannot be read from
+     * @throws ClassNotFoundException if a class of the stream cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        size = in.readInt();
+        ids = new int[Math.max(size, 4)];
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = in.readByte();
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            previous += delta;
+            ids[i] = previous;
+        }
+    }
+}
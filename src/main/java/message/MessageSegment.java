@@ -0,0 +1,407 @@
+package message;
+
+import interfaces.IMessageSource;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The MessageSegment class holds the messages with consecutive IDs that were sent in one time bucket
+ *
+ * Messages are only added to the active segment. Once its bucket is over or it is full it is sealed, and
+ * a sealed segment is never given new messages, so it can be stored, dropped or archived as a whole. Each
+ * segment has its own sender, recipient and recipient group postings, so dropping a segment does not
+ * touch the postings of any other segment.
+ *
+ * Messages of a stored segment stay on disk in an IMessageSource until they are looked up. Once a sealed
+ * segment is stored its messages are paged in from the stored copy, and only the messages changed since it
+ * was stored (i.e. accepted requests) are kept on the heap. The postings of a
+ * stored segment are only built from the message headers the first time they are needed, so opening a
+ * segment costs the same for any number of messages.
+ *
+ * A segment is not synchronized, it is only read and changed under the lock of its MessageManager.
+ *
+ * @version 1.0
+ */
+public class MessageSegment implements Serializable {
+
+    // Length of a time bucket, segments are sealed at the end of the bucket they were opened in
+    public static final long BUCKET_SPAN = 24L * 60 * 60 * 1000;
+    // Number of messages after which a segment is sealed before the end of its bucket
+    public static final int MAX_MESSAGES = 4096;
+
+    private final int firstID;
+    private int endID;
+    private final long opened;
+    private long sealed;
+    private int count;
+    private HashMap<String, MessagePostings> senders;
+    private HashMap<String, MessagePostings> recipients;
+    private HashMap<String, MessagePostings> groups;
+    private HashMap<Integer, Message> messages;
+    private transient IMessageSource pages;
+    private volatile long changes;
+    private volatile long storedChanges;
+
+    /**
+     * Constructor for an empty, active MessageSegment
+     *
+     * @param firstID The ID of the first message of the segment
+     * @param now The current time in milliseconds, the segment is opened in the bucket of this time
+     */
+    public MessageSegment(int firstID, long now){
+        this.firstID = firstID;
+        this.endID = firstID;
+        this.opened = now - now % BUCKET_SPAN;
+        this.sealed = 0;
+        this.senders = new HashMap<>();
+        this.recipients = new HashMap<>();
+        this.groups = new HashMap<>();
+        this.messages = new HashMap<>();
+    }
+
+    /**
+     * Constructor for a stored MessageSegment, paging its messages in from a message store
+     * Nothing is read here, the postings are built from the message headers on first use
+     *
+     * @param pages The on-disk store holding the messages of the segment
+     * @param firstID The ID of the first message of the segment
+     * @param endID The ID after the last message of the segment
+     * @param opened The start of the bucket the segment was opened in
+     * @param sealed The time the segment was sealed, 0 if it is active
+     */
+    public MessageSegment(IMessageSource pages, int firstID, int endID, long opened, long sealed){
+        this.firstID = firstID;
+        this.endID = endID;
+        this.opened = opened;
+        this.sealed = sealed;
+        this.messages = new HashMap<>();
+        this.pages = pages;
+        this.count = pages.size();
+    }
+
+    /**
+     * Helper
+     * Builds the sender, recipient and recipient group postings from the message headers, if they were not
+     * built yet. No message body is read.
+     */
+    private void indexPostings(){
+        if (senders != null) {
+            return;
+        }
+        senders = new HashMap<>();
+        recipients = new HashMap<>();
+        groups = new HashMap<>();
+        for (int slot = 0; slot < pages.size(); slot++) {
+            int id = pages.getID(slot);
+            getPostings(senders, pages.getSender(slot)).add(id);
+            String group = pages.getGroup(slot);
+            if (group != null) {
+                getPostings(groups, group).add(id);
+            }
+            for (String recipient : pages.getRecipients(slot)) {
+                getPostings(recipients, recipient).add(id);
+            }
+        }
+    }
+
+    /**
+     * Helper
+     * Returns the postings of a User or group, creating them if there are none yet
+     *
+     * @param index The sender, recipient or group postings
+     * @param key The username of the User or the recipient group
+     * @return MessagePostings of the key in the postings
+     */
+    private MessagePostings getPostings(HashMap<String, MessagePostings> index, String key){
+        MessagePostings postings = index.get(key);
+        if (postings == null) {
+            postings = new MessagePostings();
+            index.put(key, postings);
+        }
+        return postings;
+    }
+
+    /**
+     * Adds a new message to the end of the active segment
+     *
+     * @param messageID The ID of the message, which must be at least the ID after the last message
+     * @param message The Message being added
+     */
+    public void add(int messageID, Message message){
+        indexPostings();
+        messages.put(messageID, message);
+        getPostings(senders, message.getSenderUsername()).add(messageID);
+        if (message.getRecipientGroup() != null) {
+            getPostings(groups, message.getRecipientGroup()).add(messageID);
+        }
+        for (String recipient : message.getRecipientUsernames()) {
+            getPostings(recipients, recipient).add(messageID);
+        }
+        endID = messageID + 1;
+        count++;
+        changes++;
+    }
+
+    /**
+     * Keeps a changed message on the heap until the segment is stored again
+     *
+     * @param messageID The ID of the message
+     * @param message The changed Message
+     */
+    public void update(int messageID, Message message){
+        messages.put(messageID, message);
+        changes++;
+    }
+
+    /**
+     * Checks if an active segment should be sealed before the next message is added
+     *
+     * @param now The current time in milliseconds
+     * @return true if the bucket of the segment is over or the segment is full
+     */
+    public boolean isFull(long now){
+        return now >= opened + BUCKET_SPAN || size() >= MAX_MESSAGES;
+    }
+
+    /**
+     * Seals the segment, no message is added to it afterwards
+     *
+     * @param now The current time in milliseconds
+     */
+    public void seal(long now){
+        sealed = now;
+        changes++;
+    }
+
+    /**
+     * Checks if a message ID falls in the segment
+     *
+     * @param messageID The ID of the message
+     * @return true if the ID is between the first and the last message of the segment
+     */
+    public boolean contains(int messageID){
+        return messageID >= firstID && messageID < endID;
+    }
+
+    /**
+     * Returns a message if it is on the heap, without reading the message store
+     *
+     * @param messageID The ID of the message
+     * @return Message with the ID, null if it is not on the heap
+     */
+    public Message getLoadedMessage(int messageID){
+        return messages.get(messageID);
+    }
+
+    /**
+     * Returns a message, reading it from the message store if it is not on the heap
+     *
+     * @param messageID The ID of the message
+     * @return Message with the ID, null if it is not in the segment
+     */
+    public Message getMessage(int messageID){
+        Message message = messages.get(messageID);
+        if (message == null && pages != null) {
+            int slot = pages.find(messageID);
+            if (slot >= 0) {
+                message = pages.load(slot);
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Returns the sender of a message, without loading the message body
+     *
+     * @param messageID The ID of the message
+     * @return String username of the sender, null if the message is not in the segment
+     */
+    public String getSender(int messageID){
+        Message message = messages.get(messageID);
+        if (message != null) {
+            return message.getSenderUsername();
+        }
+        int slot = pages == null ? -1 : pages.find(messageID);
+        return slot < 0 ? null : pages.getSender(slot);
+    }
+
+    /**
+     * Returns the isRequest state of a message, without loading the message body
+     *
+     * @param messageID The ID of the message
+     * @return boolean telling if the message is a pending request
+     */
+    public boolean isRequest(int messageID){
+        Message message = messages.get(messageID);
+        if (message != null) {
+            return message.isRequest();
+        }
+        int slot = pages == null ? -1 : pages.find(messageID);
+        return slot >= 0 && pages.isRequest(slot);
+    }
+
+    /**
+     * Returns the membership cut-off of a broadcast message, without loading the message body
+     *
+     * @param messageID The ID of the message
+     * @return int membership cut-off, see IRecipientGroups.getCutoff
+     */
+    public int getCutoff(int messageID){
+        Message message = messages.get(messageID);
+        if (message != null) {
+            return message.getCutoff();
+        }
+        int slot = pages == null ? -1 : pages.find(messageID);
+        return slot < 0 ? 0 : pages.getCutoff(slot);
+    }
+
+    /**
+     * Returns the isAccepted state of a message, without loading the message body
+     *
+     * @param messageID The ID of the message
+     * @return boolean telling if the message is an accepted request
+     */
+    public boolean isAccepted(int messageID){
+        Message message = messages.get(messageID);
+        if (message != null) {
+            return message.isAccepted();
+        }
+        int slot = pages == null ? -1 : pages.find(messageID);
+        return slot >= 0 && pages.isAccepted(slot);
+    }
+
+    /**
+     * Getter for the IDs of the messages of the segment, in the order they were sent
+     *
+     * @return ArrayList of type Integer referring to the IDs of the messages
+     */
+    public ArrayList<Integer> getMessageIDs(){
+        TreeSet<Integer> ids = new TreeSet<>(messages.keySet());
+        if (pages != null) {
+            for (int slot = 0; slot < pages.size(); slot++) {
+                ids.add(pages.getID(slot));
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * Getter for the IDs of the messages a User has sent in this segment
+     *
+     * @param username The username of the User
+     * @return MessagePostings of the sent messages, null if there are none
+     */
+    public MessagePostings getSent(String username){
+        indexPostings();
+        return senders.get(username);
+    }
+
+    /**
+     * Getter for the IDs of the messages a User has been sent in this segment, broadcasts excluded
+     *
+     * @param username The username of the User
+     * @return MessagePostings of the received messages, null if there are none
+     */
+    public MessagePostings getReceived(String username){
+        indexPostings();
+        return recipients.get(username);
+    }
+
+    /**
+     * Getter for the IDs of the broadcast messages of this segment, by recipient group
+     *
+     * @return Map of recipient groups to the MessagePostings of their broadcasts
+     */
+    public Map<String, MessagePostings> getBroadcasts(){
+        indexPostings();
+        return groups;
+    }
+
+    /**
+     * Getter for the number of messages in the segment
+     *
+     * @return int number of messages
+     */
+    public int size(){
+        return count;
+    }
+
+    /**
+     * Getter for the ID of the first message of the segment
+     * @return int ID of the first message
+     */
+    public int getFirstID(){
+        return firstID;
+    }
+
+    /**
+     * Getter for the ID after the last message of the segment
+     * @return int ID the next message of the segment would have
+     */
+    public int getEndID(){
+        return endID;
+    }
+
+    /**
+     * Getter for the start of the bucket the segment was opened in
+     * @return long time in milliseconds
+     */
+    public long getOpened(){
+        return opened;
+    }
+
+    /**
+     * Getter for the time the segment was sealed
+     * @return long time in milliseconds, 0 if the segment is active
+     */
+    public long getSealed(){
+        return sealed;
+    }
+
+    /**
+     * Getter for the sealed state of the segment
+     * @return boolean telling if the segment is sealed
+     */
+    public boolean isSealed(){
+        return sealed != 0;
+    }
+
+    /**
+     * Getter for the number of changes made to the segment since it was created, see IManager
+     *
+     * @return long number of changes
+     */
+    public long getChangeCount(){
+        return changes;
+    }
+
+    /**
+     * Checks if the stored copy of the segment holds every change made to it
+     *
+     * @return true if the segment has not changed since it was stored
+     */
+    public boolean isStored(){
+        return changes == storedChanges;
+    }
+
+    /**
+     * Records that the segment was stored as of a number of changes, and pages its messages in from the
+     * stored copy from now on. The heap copies are released if the segment did not change since it was
+     * encoded, otherwise they are kept until the segment is stored again.
+     *
+     * @param changeCount The change count of the segment when it was encoded
+     * @param stored The stored copy of the segment, null to keep the messages where they are
+     */
+    public void setStored(long changeCount, IMessageSource stored){
+        storedChanges = changeCount;
+        if (stored == null || changes != changeCount) {
+            return;
+        }
+        pages = stored;
+        messages = new HashMap<>();
+    }
+}
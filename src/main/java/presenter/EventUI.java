@@ -1,8 +1,11 @@
 package presenter;
 
+import event.Event;
 import event.EventManager;
 import interfaces.IPresenter;
 
+import java.util.Set;
+
 /**
  * The EventUI provides the prompts for Event services
  *
@@ -48,24 +51,25 @@ public class EventUI implements IPresenter {
 
 
     /**
-     * Smart prints all the info about the event with eventID
+     * Smart prints all the info about an event
+     *
+     * @param event the Event to print
      */
-    private void printLine(String eventID) {
-        eventManager.getEventList().get(eventID);
+    private void printLine(Event event) {
         System.out.print("|");
         String tempSpeaker = "";
-        try {
-            tempSpeaker = eventManager.getSpeakers(eventID).get(0);
-        } catch (Exception e) {
-            ;
+        // a copy, the speakers can change in another session while the line is printed
+        Set<String> speakers = eventManager.getSpeakers(event.getEventID());
+        if (speakers != null && !speakers.isEmpty()) {
+            tempSpeaker = speakers.iterator().next();
         }
-        smartPrint("EventName", eventManager.getEventName(eventID));
-        smartPrint("eventID", eventID);
-        smartPrint("StartTime", eventManager.getStartTime(eventID));
-        smartPrint("endTime", eventManager.getEndTime(eventID));
+        smartPrint("EventName", event.getEventName());
+        smartPrint("eventID", event.getEventID());
+        smartPrint("StartTime", Integer.toString(event.getStartTime()));
+        smartPrint("endTime", Integer.toString(event.getEndTime()));
         smartPrint("Speakers", tempSpeaker);
-        smartPrint("RoomID", eventManager.getRoomID(eventID));
-        if (eventManager.isFull(eventID)) {
+        smartPrint("RoomID", event.getRoomID());
+        if (event.isFull()) {
             smartPrint("Availability", "No");
         } else {
             smartPrint("Availability", "Yes");
@@ -114,17 +118,20 @@ public class EventUI implements IPresenter {
      * @param e the event ID of the event
      */
     public void printDetail(String e) {
-        System.out.println("Event Name: " + eventManager.getEventName(e));
+        Event event = eventManager.getEvent(e);
+        if (event == null) {
+            return;
+        }
+        System.out.println("Event Name: " + event.getEventName());
         System.out.println("EventID: " + e);
-        System.out.println("Start Time: " + eventManager.getStartTime(e));
-        System.out.println("End Time: " + eventManager.getEndTime(e));
+        System.out.println("Start Time: " + event.getStartTime());
+        System.out.println("End Time: " + event.getEndTime());
         System.out.println("Speakers: " + eventManager.getSpeakers(e));
-        System.out.println("RoomID: " + eventManager.getRoomID(e));
+        System.out.println("RoomID: " + event.getRoomID());
         System.out.print("Availability: ");
-        if (eventManager.isFull(e)) {
+        if (event.isFull()) {
             System.out.println("No");
-        }
-        if (!eventManager.isFull(e)) {
+        } else {
             System.out.println("Yes");
         }
     }
@@ -153,9 +160,9 @@ public class EventUI implements IPresenter {
     public void printEvents() {
         printTitle();
         System.out.print("\n");
-        for (String i : eventManager.getEventList().keySet()) {
-            if (!eventManager.getRoomID(i).equals("0") && !eventManager.getStartTime(i).equals("0")) {
-                printLine(i);
+        for (Event event : eventManager.getEventList().values()) {
+            if (!event.getRoomID().equals("0")) {
+                printLine(event);
             }
         }
     }
@@ -168,12 +175,8 @@ public class EventUI implements IPresenter {
     public void printSpeakerSchedule(String speaker) {
         printTitle();
         System.out.print("\n");
-        for (String i : eventManager.getEventList().keySet()) {
-            if (!eventManager.getRoomID(i).equals("0") && !eventManager.getStartTime(i).equals("0")) {
-                if (eventManager.getSpeakers(i).contains(speaker)) {
-                    printLine(i);
-                }
-            }
+        for (Event event : eventManager.getSpeakerEvents(speaker)) {
+            printLine(event);
         }
     }
 
@@ -185,12 +188,8 @@ public class EventUI implements IPresenter {
     public void printUserSchedule(String user) {
         printTitle();
         System.out.print("\n");
-        for (String i : eventManager.getEventList().keySet()) {
-            if (!eventManager.getRoomID(i).equals("0") && !eventManager.getStartTime(i).equals("0")) {
-                if (eventManager.getAttendees(i).contains(user)) {
-                    printLine(i);
-                }
-            }
+        for (Event event : eventManager.getAttendeeEvents(user)) {
+            printLine(event);
         }
     }
 
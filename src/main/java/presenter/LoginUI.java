@@ -74,6 +74,9 @@ public class LoginUI implements IPresenter {
             case 4:
                 System.out.println("Event Detail");
                 break;
+            case 5:
+                System.out.println("The event is full, you have been added to its waitlist and will be messaged if a seat opens up");
+                break;
         }
 
     }
@@ -197,6 +200,15 @@ public class LoginUI implements IPresenter {
         System.out.println("Type RESET to complete erase and reset the database.");
     }
 
+    /**
+     * Prints the port the server is serving sessions on
+     *
+     * @param port the port the server listens on
+     */
+    public void serverStarted(int port) {
+        System.out.println("Serving the conference on port " + port + ", press Ctrl+C to shut down.");
+    }
+
     /**
      * Prompt for a file path
      */
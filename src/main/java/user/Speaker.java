@@ -1,13 +1,13 @@
 package user;
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.TreeMap;
 /**
  * @author Haoying Shen
  * @version 1.0
  */
 public class Speaker extends User implements Serializable
 {
-    private HashMap<String,String> eventsToHost;
+    private TreeMap<Integer,Integer> eventsToHost;
     /**
      * Constructor for the Speaker class, initializes an Speaker entity, subclass of User.
      *
@@ -18,35 +18,35 @@ public class Speaker extends User implements Serializable
 
     public Speaker(String name, String username, String password) {
         super(name, username, password);
-        this.eventsToHost= new HashMap<String, String>();
+        this.eventsToHost= new TreeMap<Integer, Integer>();
     }
 
 
     /**
      * Adds an event that this speaker will speak at
      *
-     * @param time        The string representing the time of the event
-     * @param eventID     The id representing the event
+     * @param time        The int representing the time of the event
+     * @param eventID     The number of the id representing the event
      */
-    public void addEventHost(String time, String eventID) {
+    public void addEventHost(int time, int eventID) {
         eventsToHost.put(time, eventID);
     }
 
     /**
      * Removes an event that this speaker will speak at
      *
-     * @param time        The string representing the time of the event
+     * @param time        The int representing the time of the event
      */
-    public void removeEventHost(String time){
+    public void removeEventHost(int time){
         eventsToHost.remove(time);
     }
 
     /**
-     * Returns the hashmap of all events that this speaker will present at
+     * Returns the TreeMap of all events that this speaker will present at, by the number of their event ID
      *
-     * @return eventsToHost   The Hashmap representing all events to speak at
+     * @return eventsToHost   The TreeMap representing all events to speak at, sorted by time
      */
-    public HashMap<String,String> getEventsToHost(){
+    public TreeMap<Integer,Integer> getEventsToHost(){
         return eventsToHost;
     }
 }
@@ -1,15 +1,26 @@
 package user;
+import interfaces.IEventTimes;
+import interfaces.IJournal;
 import interfaces.IManager;
 
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * The Speakers are kept in a ConcurrentHashMap and changes to a Speaker's speaking schedule hold
+ * the lock of that Speaker, so one SpeakerManager can be shared by every session.
+ *
  * @author Haoying Shen
  * @version 1.0
  */
 public class SpeakerManager implements Serializable, IManager {
-    private HashMap<String, Speaker> speakerMap;
+    private ConcurrentHashMap<String, Speaker> speakerMap;
+    private transient IJournal journal;
+    private transient IEventTimes eventTimes;
+    private final AtomicLong changes = new AtomicLong();
     /**
      * Constructor for the SpeakerManager class, initializes a SpeakerManager.
      *
@@ -17,14 +28,84 @@ public class SpeakerManager implements Serializable, IManager {
      */
     public SpeakerManager(HashMap<String,Speaker> SpeakerHash)
     {
-        speakerMap = SpeakerHash;
+        speakerMap = new ConcurrentHashMap<>(SpeakerHash);
     }
+
+    /**
+     * Sets the journal that new Speakers and speaking schedule changes are recorded to
+     *
+     * @param journal   The journal to record to, null to stop recording
+     */
+    public void setJournal(IJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Sets where the end times of the events in the schedules are looked up, so events that overlap are
+     * found by checkIfSpeakerAvail
+     *
+     * @param eventTimes   The end times of the events, null to only check the start times
+     */
+    public void setEventTimes(IEventTimes eventTimes) {
+        this.eventTimes = eventTimes;
+    }
+
+    /**
+     * Helper
+     * Enters a change if a journal is set, see IJournal.beginChange
+     *
+     * @return IJournal   The journal the change was entered in, to be passed to endChange
+     */
+    private IJournal beginChange() {
+        IJournal entered = journal;
+        if (entered != null) {
+            entered.beginChange();
+        }
+        return entered;
+    }
+
+    /**
+     * Helper
+     * Leaves a change entered by beginChange
+     *
+     * @param entered   The journal returned by beginChange
+     */
+    private static void endChange(IJournal entered) {
+        if (entered != null) {
+            entered.endChange();
+        }
+    }
+
+    /**
+     * Helper
+     * Counts a change and records it if a journal is set
+     *
+     * @param type      The record type
+     * @param fields    The arguments of the change
+     */
+    private void record(byte type, String... fields) {
+        changes.incrementAndGet();
+        if (journal != null) {
+            journal.record(type, fields);
+        }
+    }
+
+    /**
+     * Returns the number of changes made through this SpeakerManager, see IManager
+     *
+     * @return long   The number of changes made since this SpeakerManager was created
+     */
+    @Override
+    public long getChangeCount() {
+        return changes.get();
+    }
+
     /**
      * Gets the hashmap of all Speakers
      *
      * @return speakerMap A Hashmap of username keys tied to Speaker values.
      */
-    public HashMap<String, Speaker> getSpeakerMap(){
+    public Map<String, Speaker> getSpeakerMap(){
         return speakerMap;
     }
 
@@ -38,35 +119,44 @@ public class SpeakerManager implements Serializable, IManager {
      * @param password          The desired password of the Speaker
      */
     public void newSpeaker(UserManager userManager,
-                               String name,
-                               String username,
-                               String password)
+                           String name,
+                           String username,
+                           String password)
     {
-        Speaker newS = new Speaker(name, username, password);
-        speakerMap.put(newS.getUsername(), newS);
-        userManager.getUserMap().put(username, newS);
+        IJournal change = beginChange();
+        try {
+            synchronized (this) {
+                Speaker newS = new Speaker(name, username, password);
+                userManager.registerUser(newS);
+                speakerMap.put(newS.getUsername(), newS);
+                userManager.getUserMap().put(username, newS);
+                record(IJournal.NEW_SPEAKER, name, username, password);
+            }
+        } finally {
+            endChange(change);
+        }
     }
 
     /**
      * Returns a boolean for any Speaker entity
-     * Will return true if the User is available at the given time
-     * Will return false if the User is not available at the given time
+     * Will return true if the Speaker is available from the start to the end time
+     * Will return false if an event the Speaker attends or speaks at overlaps the times
      * Attendees and Organizers should use checkIfUserAvail instead
      *
      * @param username   The username of the desired User entity
-     * @param time       The time key for schedules
+     * @param start      The start time of the event
+     * @param end        The end time of the event
      * @return boolean   If the user is, or is not available
      */
-    public boolean checkIfSpeakerAvail(String username, String time)
+    public boolean checkIfSpeakerAvail(String username, int start, int end)
     {
-        if (speakerMap.get(username).getEntireSchedule().containsKey(time)) {
-            return false;
+        Speaker speaker = speakerMap.get(username);
+        synchronized (speaker) {
+            if (!User.isFree(speaker.getEntireSchedule(), start, end, eventTimes)) {
+                return false;
+            }
+            return User.isFree(speaker.getEventsToHost(), start, end, eventTimes);
         }
-        if (speakerMap.get(username).getEventsToHost().containsKey(time)){
-            return false;
-        }
-        else
-            return true;
     }
 
     /**
@@ -77,9 +167,18 @@ public class SpeakerManager implements Serializable, IManager {
      * @param time      The time of the event
      * @param eventID   The ID of the event
      */
-    public void addSpeakerEvent(String username, String time, String eventID)
+    public void addSpeakerEvent(String username, int time, String eventID)
     {
-        speakerMap.get(username).addEventHost(time, eventID);
+        IJournal change = beginChange();
+        try {
+            Speaker speaker = speakerMap.get(username);
+            synchronized (speaker) {
+                speaker.addEventHost(time, Integer.parseInt(eventID));
+                record(IJournal.ADD_SPEAKER_EVENT, username, Integer.toString(time), eventID);
+            }
+        } finally {
+            endChange(change);
+        }
     }
 
     /**
@@ -89,9 +188,18 @@ public class SpeakerManager implements Serializable, IManager {
      * @param username  The username of the desired Speaker entity
      * @param time      The time of the event
      */
-    public void removeSpeakerEvent(String username, String time)
+    public void removeSpeakerEvent(String username, int time)
     {
-        speakerMap.get(username).removeEventHost(time);
+        IJournal change = beginChange();
+        try {
+            Speaker speaker = speakerMap.get(username);
+            synchronized (speaker) {
+                speaker.removeEventHost(time);
+                record(IJournal.REMOVE_SPEAKER_EVENT, username, Integer.toString(time));
+            }
+        } finally {
+            endChange(change);
+        }
     }
 
     /**
@@ -100,7 +208,10 @@ public class SpeakerManager implements Serializable, IManager {
      * @param username       The username of the desired Speaker entity
      * @return eventsToHost  The hashmap of events to speak at
      */
-    public HashMap<String,String> getSpeakingSchedule(String username){
-        return speakerMap.get(username).getEventsToHost();
+    public HashMap<Integer,String> getSpeakingSchedule(String username){
+        Speaker speaker = speakerMap.get(username);
+        synchronized (speaker) {
+            return User.toEventIDs(speaker.getEventsToHost());
+        }
     }
 }
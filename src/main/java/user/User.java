@@ -1,9 +1,17 @@
 package user;
-import java.util.ArrayList;
+import interfaces.IEventTimes;
+import util.IntSet;
+
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 import java.io.Serializable;
 
 /**
+ * The contacts of a User are kept by user ID (see IUserRegistry) in an IntSet, and the events in the
+ * schedule by the number of their event ID, so the UserManager turns them back into Strings. The schedule
+ * is sorted by start time, so an event can only overlap the one starting at or before it and the next one.
+ *
  * @author Haoying Shen
  * @version 1.0
  */
@@ -11,13 +19,15 @@ public class User implements Serializable
 {
     private String username;
     private String password;
-    private ArrayList<String> contacts;
+    private IntSet contacts;
     private String name;
-    private HashMap<String,String> schedule;
+    private TreeMap<Integer,Integer> schedule;
+    private int sequence;
 
     /**
      * Constructor for the User class, initializes an User entity.
      * This should never be called on its own.
+     * The UserManager adds the User to its own contacts once the username has an ID.
      *
      * @param name        The name provided by the UserManager.
      * @param username    The username provided by the UserManager.
@@ -27,9 +37,8 @@ public class User implements Serializable
         this.setName(name);
         this.setUsername(username);
         this.setPassword(password);
-        contacts = new ArrayList<>();
-        contacts.add(username);
-        schedule = new HashMap<>();
+        contacts = new IntSet();
+        schedule = new TreeMap<>();
     }
 
     /**
@@ -60,21 +69,67 @@ public class User implements Serializable
     }
 
     /**
-     * Returns an Hashmap with the Events this User entity will attend.
+     * Returns a TreeMap with the Events this User entity will attend, by the number of their event ID.
      *
      * @return eventIDList
      */
-    public HashMap<String,String> getEntireSchedule() {
+    public TreeMap<Integer,Integer> getEntireSchedule() {
         return schedule;
     }
 
     /**
-     * Returns an Arraylist with the contacts of this User entity.
+     * Helper
+     * Turns a schedule kept by the number of event IDs into a copy of it kept by event ID
+     *
+     * @param schedule  The schedule, by the number of the event IDs
+     * @return HashMap of times to event IDs
+     */
+    static HashMap<Integer,String> toEventIDs(Map<Integer,Integer> schedule) {
+        HashMap<Integer,String> eventIDs = new HashMap<>();
+        for (Map.Entry<Integer,Integer> entry : schedule.entrySet()) {
+            eventIDs.put(entry.getKey(), Integer.toString(entry.getValue()));
+        }
+        return eventIDs;
+    }
+
+    /**
+     * Helper
+     * Checks whether a schedule is free for an event from start to end. Only the event starting at or before
+     * start and the first event after it can overlap, the same as the bookings of a RoomCalendar.
+     *
+     * @param schedule  The schedule, sorted by start time
+     * @param start     The start time of the event
+     * @param end       The end time of the event, not included
+     * @param times     The end times of the events in the schedule, null to only check the start times
+     * @return boolean  true if no event of the schedule overlaps the event
+     */
+    static boolean isFree(TreeMap<Integer,Integer> schedule, int start, int end, IEventTimes times) {
+        Map.Entry<Integer,Integer> before = schedule.floorEntry(start);
+        if (before != null && (before.getKey() == start
+                || (times != null && times.getEndTime(Integer.toString(before.getValue())) > start))) {
+            return false;
+        }
+        Integer after = schedule.higherKey(start);
+        return after == null || after >= end;
+    }
+
+    /**
+     * Returns the user IDs of the contacts of this User entity, in the order they were added.
      *
      * @return contacts
      */
-    public ArrayList<String> getContacts() {
-        return contacts;
+    public int[] getContacts() {
+        return contacts.toArray();
+    }
+
+    /**
+     * Checks if a user is a contact of this User entity
+     *
+     * @param userID  The user ID of the other user
+     * @return true if the user is a contact
+     */
+    public boolean hasContact(int userID) {
+        return contacts.contains(userID);
     }
 
     /**
@@ -111,51 +166,70 @@ public class User implements Serializable
      * Sets the Contacts of this User entity
      * Can be used to modify existing list of contacts
      *
-     * @param cont  The desired list of contacts to replace with
+     * @param cont  The desired set of contact user IDs to replace with
      */
-    public void setContacts(ArrayList<String> cont){
+    public void setContacts(IntSet cont){
         contacts = cont;
     }
 
     /**
-     * Sets the hashmap for events of this User entity
+     * Returns the position of this User entity in the order Users were created.
+     *
+     * @return sequence
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Sets the position of this User entity in the order Users were created
+     * This should only be called by the UserManager or when Users are loaded
+     *
+     * @param sequence  The position of the User
+     */
+    public void setSequence(int sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Sets the TreeMap for events of this User entity
      * Can be used to modify existing events
      *
-     * @param sch  The desired hashmap of events to replace with
+     * @param sch  The desired TreeMap of events to replace with
      */
-    public void setSchedule(HashMap<String,String> sch){
+    public void setSchedule(TreeMap<Integer,Integer> sch){
         schedule = sch;
     }
 
     /**
-     * Adds a new contact to the Arraylist of existing contacts
+     * Adds a new contact to the set of existing contacts
      *
-     * @param username  The username of the user to add to the list of contacts
+     * @param userID  The user ID of the user to add to the list of contacts
      */
-    public void addContact(String username) {
-        if (contacts.contains(username)){
+    public void addContact(int userID) {
+        if (contacts.contains(userID)){
             System.out.println("Contact already exists");
         }
         else
-            contacts.add(username);
+            contacts.add(userID);
     }
     /**
-     * Adds a new event to the Arraylist of existing events to be attended
+     * Adds a new event to the Hashmap of existing events to be attended
      * @param time The time of the event
-     * @param eventID  The eventID to add to the list of events to be attended
+     * @param eventID  The number of the eventID to add to the list of events to be attended
      */
-    public void addEvent(String time, String eventID) {
+    public void addEvent(int time, int eventID) {
         schedule.put(time, eventID);
     }
 
     /**
-     * Removes a contact to the Arraylist of existing contacts
+     * Removes a contact from the set of existing contacts
      *
-     * @param username  The name of the user to remove to the list of contacts
+     * @param userID  The user ID of the user to remove from the list of contacts
      */
-    public void removeContact(String username) {
-        if (contacts.contains(username)){
-            contacts.remove(username);
+    public void removeContact(int userID) {
+        if (contacts.contains(userID)){
+            contacts.remove(userID);
         }
         else
             System.out.println("Contact does not exist");
@@ -166,7 +240,7 @@ public class User implements Serializable
      *
      * @param time  The time of one of the events in the hashmap
      */
-    public void removeEvent(String time){
+    public void removeEvent(int time){
         schedule.remove(time);
     }
 }
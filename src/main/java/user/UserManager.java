@@ -1,19 +1,43 @@
 package user;
+import interfaces.IEventTimes;
+import interfaces.IJournal;
 import interfaces.IManager;
+import interfaces.IRecipientGroups;
+import interfaces.IUserRegistry;
+import util.IntSet;
+import util.UserRegistry;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.io.Serializable;
 /**
+ * The Users are kept in ConcurrentHashMaps, so one UserManager can be shared by every session.
+ * Changes to a User's schedule or contacts hold the lock of that User.
+ * Every username is given a dense int ID by the UserRegistry, which the contacts of the Users, and the
+ * attendees and speakers in the EventManager, are kept by.
+ *
  * @author Haoying Shen
  * @version 1.0
  */
-public class UserManager implements Serializable, IManager
+public class UserManager implements Serializable, IManager, IRecipientGroups, IUserRegistry
 {
-    private HashMap<String, User> userMap;
-    private HashMap<String, Organizer> organizerMap;
-    private HashMap<String, Attendee> attendeeMap;
-    private HashMap<String, VIP> VIPMap;
+    // Username that system messages (i.e. waitlist promotions) are sent from, it is not a User
+    // and no User can be registered with it
+    public static final String SYSTEM_USERNAME = "System";
+
+    private ConcurrentHashMap<String, User> userMap;
+    private ConcurrentHashMap<String, Organizer> organizerMap;
+    private ConcurrentHashMap<String, Attendee> attendeeMap;
+    private ConcurrentHashMap<String, VIP> VIPMap;
+    private UserRegistry registry;
+    private transient IJournal journal;
+    private transient IEventTimes eventTimes;
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicInteger sequence = new AtomicInteger();
 
     /**
      * Constructor for the UserManager class, initializes an UserManager.
@@ -28,10 +52,86 @@ public class UserManager implements Serializable, IManager
                        HashMap<String, Attendee> AttendeeHash,
                        HashMap<String, VIP> VIPHash)
     {
-        userMap = UserHash;
-        organizerMap = OrganizerHash;
-        attendeeMap = AttendeeHash;
-        VIPMap = VIPHash;
+        userMap = new ConcurrentHashMap<>(UserHash);
+        organizerMap = new ConcurrentHashMap<>(OrganizerHash);
+        attendeeMap = new ConcurrentHashMap<>(AttendeeHash);
+        VIPMap = new ConcurrentHashMap<>(VIPHash);
+        registry = new UserRegistry();
+        for (User user : userMap.values()) {
+            registry.getUserID(user.getUsername());
+            if (user.getSequence() >= sequence.get()) {
+                sequence.set(user.getSequence() + 1);
+            }
+        }
+    }
+
+    /**
+     * Sets the journal that new users, contacts and schedule changes are recorded to
+     *
+     * @param journal   The journal to record to, null to stop recording
+     */
+    public void setJournal(IJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Sets where the end times of the events in the schedules are looked up, so events that overlap are
+     * found by checkIfUserAvail
+     *
+     * @param eventTimes   The end times of the events, null to only check the start times
+     */
+    public void setEventTimes(IEventTimes eventTimes) {
+        this.eventTimes = eventTimes;
+    }
+
+    /**
+     * Helper
+     * Enters a change if a journal is set, see IJournal.beginChange
+     *
+     * @return IJournal   The journal the change was entered in, to be passed to endChange
+     */
+    private IJournal beginChange() {
+        IJournal entered = journal;
+        if (entered != null) {
+            entered.beginChange();
+        }
+        return entered;
+    }
+
+    /**
+     * Helper
+     * Leaves a change entered by beginChange
+     *
+     * @param entered   The journal returned by beginChange
+     */
+    private static void endChange(IJournal entered) {
+        if (entered != null) {
+            entered.endChange();
+        }
+    }
+
+    /**
+     * Helper
+     * Counts a change and records it if a journal is set
+     *
+     * @param type      The record type
+     * @param fields    The arguments of the change
+     */
+    private void record(byte type, String... fields) {
+        changes.incrementAndGet();
+        if (journal != null) {
+            journal.record(type, fields);
+        }
+    }
+
+    /**
+     * Returns the number of changes made through this UserManager, see IManager
+     *
+     * @return long   The number of changes made since this UserManager was created
+     */
+    @Override
+    public long getChangeCount() {
+        return changes.get();
     }
 
     /**
@@ -43,9 +143,18 @@ public class UserManager implements Serializable, IManager
      * @param password   The desired password of the Attendee
      */
     public void newAttendee(String name, String username, String password) {
-        Attendee newA = new Attendee(name, username, password);
-        userMap.put(username, newA);
-        attendeeMap.put(username, newA);
+        IJournal change = beginChange();
+        try {
+            synchronized (this) {
+                Attendee newA = new Attendee(name, username, password);
+                registerUser(newA);
+                userMap.put(username, newA);
+                attendeeMap.put(username, newA);
+                record(IJournal.NEW_ATTENDEE, name, username, password);
+            }
+        } finally {
+            endChange(change);
+        }
     }
 
     /**
@@ -57,9 +166,18 @@ public class UserManager implements Serializable, IManager
      * @param password   The desired password of the VIP
      */
     public void newVIP(String name, String username, String password) {
-        VIP newV = new VIP(name, username, password);
-        userMap.put(username, newV);
-        VIPMap.put(username, newV);
+        IJournal change = beginChange();
+        try {
+            synchronized (this) {
+                VIP newV = new VIP(name, username, password);
+                registerUser(newV);
+                userMap.put(username, newV);
+                VIPMap.put(username, newV);
+                record(IJournal.NEW_VIP, name, username, password);
+            }
+        } finally {
+            endChange(change);
+        }
     }
 
 
@@ -72,9 +190,79 @@ public class UserManager implements Serializable, IManager
      * @param password   The desired password of the Organizer
      */
     public void newOrganizer(String name, String username, String password) {
-        Organizer newO = new Organizer(name, username, password);
-        userMap.put(username, newO);
-        organizerMap.put(username, newO);
+        IJournal change = beginChange();
+        try {
+            synchronized (this) {
+                Organizer newO = new Organizer(name, username, password);
+                registerUser(newO);
+                userMap.put(username, newO);
+                organizerMap.put(username, newO);
+                record(IJournal.NEW_ORGANIZER, name, username, password);
+            }
+        } finally {
+            endChange(change);
+        }
+    }
+
+    /**
+     * Gives the username of a new User an ID and the next position in the order Users were created,
+     * and adds the User to its own contacts, also used when another manager creates the User
+     *
+     * @param user   The new User
+     */
+    public void registerUser(User user) {
+        user.setSequence(sequence.getAndIncrement());
+        user.addContact(registry.getUserID(user.getUsername()));
+    }
+
+    /**
+     * Sets the contacts of a User, used when the Users are loaded (i.e. a snapshot)
+     *
+     * @param username   The username of the User
+     * @param contacts   The usernames of the contacts, in the order they were added
+     */
+    public void setUserContacts(String username, ArrayList<String> contacts) {
+        IntSet ids = new IntSet();
+        for (String contact : contacts) {
+            ids.add(registry.getUserID(contact));
+        }
+        User user = userMap.get(username);
+        synchronized (user) {
+            user.setContacts(ids);
+        }
+    }
+
+    /**
+     * Returns the ID of a username, without taking a lock if it already has one
+     *
+     * @param username   The username of a User
+     * @return int       The ID of the username
+     */
+    @Override
+    public int getUserID(String username) {
+        return registry.getUserID(username);
+    }
+
+    /**
+     * Returns the username of an ID, without taking a lock
+     *
+     * @param userID     An ID given out by getUserID
+     * @return String    The username with the ID, null if there is none
+     */
+    @Override
+    public String getUsername(int userID) {
+        return registry.getUsername(userID);
+    }
+
+    /**
+     * Returns the shared instance of a username, without taking a lock
+     *
+     * @param username   The username of a User
+     * @return String    The registered instance of the username, username itself if there is no such User
+     */
+    @Override
+    public String canonical(String username) {
+        return registry.canonical(username);
     }
 
     /**
@@ -82,16 +270,27 @@ public class UserManager implements Serializable, IManager
      *
      * @return A Hashmap of username keys tied to User values.
      */
-    public HashMap<String,User> getUserMap() {
+    public Map<String,User> getUserMap() {
         return userMap;
     }
 
+    /**
+     * Returns whether a new User can be registered with a username
+     * The username must not belong to a User or be the SYSTEM_USERNAME
+     *
+     * @param username   The desired username
+     * @return boolean   true if the username can be registered
+     */
+    public boolean isUsernameAvailable(String username) {
+        return !userMap.containsKey(username) && !username.equals(SYSTEM_USERNAME);
+    }
+
     /**
      * Gets the hashmap of all Attendees
      *
      * @return AttendeeMap A Hashmap of username keys tied to Attendee values.
      */
-    public HashMap<String, Attendee> getAttendeeMap(){
+    public Map<String, Attendee> getAttendeeMap(){
         return attendeeMap;
     }
 
@@ -101,7 +300,7 @@ public class UserManager implements Serializable, IManager
      *
      * @return OrganizerMap A Hashmap of username keys tied to Organizer values
      */
-    public HashMap<String, Organizer> getOrganizerMap() {
+    public Map<String, Organizer> getOrganizerMap() {
         return organizerMap;
     }
 
@@ -110,7 +309,7 @@ public class UserManager implements Serializable, IManager
      *
      * @return VIPMap A Hashmap of username keys tied to Vip values
      */
-    public HashMap<String, VIP> getVIPMap() {
+    public Map<String, VIP> getVIPMap() {
         return VIPMap;
     }
 
@@ -141,7 +340,14 @@ public class UserManager implements Serializable, IManager
      * @return contacts The User's list of contacts
      */
     public ArrayList<String> getUserContactList(String username){
-        return userMap.get(username).getContacts();
+        User user = userMap.get(username);
+        synchronized (user) {
+            ArrayList<String> contacts = new ArrayList<>();
+            for (int contact : user.getContacts()) {
+                contacts.add(registry.getUsername(contact));
+            }
+            return contacts;
+        }
     }
 
     /**
@@ -152,15 +358,42 @@ public class UserManager implements Serializable, IManager
      * @param username2  The username of the desired user entity
      */
     public void addUserContacts(String username1, String username2){
-        if (userMap.get(username1).getContacts().contains(username2)){
-            System.out.println("User is already in contact.");
-        }
-        else {
-            userMap.get(username1).addContact(username2);
-            userMap.get(username2).addContact(username1);
+        IJournal change = beginChange();
+        try {
+            User user1 = userMap.get(username1);
+            User user2 = userMap.get(username2);
+            int id1 = registry.getUserID(username1);
+            int id2 = registry.getUserID(username2);
+            User first = firstInOrder(username1, username2);
+            synchronized (first) {
+                synchronized (first == user1 ? user2 : user1) {
+                    if (user1.hasContact(id2)){
+                        System.out.println("User is already in contact.");
+                        return;
+                    }
+                    user1.addContact(id2);
+                    user2.addContact(id1);
+                    record(IJournal.ADD_CONTACTS, username1, username2);
+                }
+            }
+        } finally {
+            endChange(change);
         }
     }
 
+    /**
+     * Helper
+     * Returns the user whose lock is taken first when the locks of two users are both needed. Locks are
+     * always taken in username order, so two threads locking the same users can not deadlock.
+     *
+     * @param username1  The username of the first user
+     * @param username2  The username of the second user
+     * @return User      The user with the lesser username
+     */
+    private User firstInOrder(String username1, String username2){
+        return userMap.get(username1.compareTo(username2) <= 0 ? username1 : username2);
+    }
+
     /**
      * Remove 2 users from each other's contact list
      * Must already be contacts
@@ -169,14 +402,27 @@ public class UserManager implements Serializable, IManager
      * @param username2  The username of the desired user entity
      */
     public void removeUserContacts(String username1, String username2){
-        if (userMap.get(username1).getContacts().contains(username2)){
-            userMap.get(username1).removeContact(username2);
-            userMap.get(username2).removeContact(username1);
-        }
-        else{
-            System.out.println("The user you are trying to remove does not exist in your contacts");
+        IJournal change = beginChange();
+        try {
+            User user1 = userMap.get(username1);
+            User user2 = userMap.get(username2);
+            int id1 = registry.getUserID(username1);
+            int id2 = registry.getUserID(username2);
+            User first = firstInOrder(username1, username2);
+            synchronized (first) {
+                synchronized (first == user1 ? user2 : user1) {
+                    if (!user1.hasContact(id2)){
+                        System.out.println("The user you are trying to remove does not exist in your contacts");
+                        return;
+                    }
+                    user1.removeContact(id2);
+                    user2.removeContact(id1);
+                    record(IJournal.REMOVE_CONTACTS, username1, username2);
+                }
+            }
+        } finally {
+            endChange(change);
         }
-
     }
 
     /**
@@ -187,8 +433,17 @@ public class UserManager implements Serializable, IManager
      * @param time      The time of the event
      * @param eventID   The ID of the event
      */
-    public void addUserEvent(String username, String time, String eventID){
-        userMap.get(username).addEvent(time, eventID);
+    public void addUserEvent(String username, int time, String eventID){
+        IJournal change = beginChange();
+        try {
+            User user = userMap.get(username);
+            synchronized (user) {
+                user.addEvent(time, Integer.parseInt(eventID));
+                record(IJournal.ADD_USER_EVENT, username, Integer.toString(time), eventID);
+            }
+        } finally {
+            endChange(change);
+        }
     }
 
     /**
@@ -198,8 +453,17 @@ public class UserManager implements Serializable, IManager
      * @param username  The username of the desired user entity
      * @param time      The time of the event
      */
-    public void removeUserEvent(String username, String time){
-        userMap.get(username).removeEvent(time);
+    public void removeUserEvent(String username, int time){
+        IJournal change = beginChange();
+        try {
+            User user = userMap.get(username);
+            synchronized (user) {
+                user.removeEvent(time);
+                record(IJournal.REMOVE_USER_EVENT, username, Integer.toString(time));
+            }
+        } finally {
+            endChange(change);
+        }
     }
 
 
@@ -209,24 +473,79 @@ public class UserManager implements Serializable, IManager
      * @param username  The username of the desired User entity
      * @return schedule The hashmap of events to attend
      */
-    public HashMap<String,String> getAttendingSchedule(String username) {
-        return userMap.get(username).getEntireSchedule();
+    public HashMap<Integer,String> getAttendingSchedule(String username) {
+        User user = userMap.get(username);
+        synchronized (user) {
+            return User.toEventIDs(user.getEntireSchedule());
+        }
     }
 
     /**
      * Returns a boolean for any Attendee or Organizer entity
-     * Will return true if the User is available at the given time
-     * Will return false if the User is not available at the given time
+     * Will return true if the User is available from the start to the end time
+     * Will return false if an event of the User overlaps the times
      *
      * @param username   The username of the desired User entity
-     * @param time       The time key for schedules
+     * @param start      The start time of the event
+     * @param end        The end time of the event
      * @return boolean   If the user is, or is not available
      */
-    public boolean checkIfUserAvail(String username, String time){
-        return !userMap.get(username).getEntireSchedule().containsKey(time);
+    public boolean checkIfUserAvail(String username, int start, int end){
+        User user = userMap.get(username);
+        synchronized (user) {
+            return User.isFree(user.getEntireSchedule(), start, end, eventTimes);
+        }
     }
 
 
+    /**
+     * Returns whether a User is currently in a recipient group of broadcast messages
+     * Attendee includes VIPs, the same as mass messages to Attendees
+     *
+     * @param group      The recipient group, one of the groups in IRecipientGroups
+     * @param username   The username of a User
+     * @return boolean   true if the User is in the group
+     */
+    @Override
+    public boolean isInGroup(String group, String username) {
+        switch (group) {
+            case EVERYONE:
+                return userMap.containsKey(username);
+            case ATTENDEES:
+                return attendeeMap.containsKey(username) || VIPMap.containsKey(username);
+            case VIPS:
+                return VIPMap.containsKey(username);
+            case SPEAKERS:
+                return userMap.get(username) instanceof Speaker;
+            case ORGANIZERS:
+                return organizerMap.containsKey(username);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the membership cut-off that a broadcast sent now records
+     *
+     * @return int       The number of positions given to Users so far
+     */
+    @Override
+    public int getCutoff() {
+        return sequence.get();
+    }
+
+    /**
+     * Returns the position of a User in the order Users were created
+     *
+     * @param username   The username of a User
+     * @return int       The position of the User, Integer.MAX_VALUE if there is no such User
+     */
+    @Override
+    public int getSequence(String username) {
+        User user = userMap.get(username);
+        return user == null ? Integer.MAX_VALUE : user.getSequence();
+    }
+
     /**
      * Returns a string for the type of the User
      * This assumes that the user exists
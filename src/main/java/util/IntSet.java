@@ -0,0 +1,207 @@
+package util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * The IntSet class is an insertion-ordered set of non-negative ints, i.e. the user IDs given out by a
+ * UserRegistry
+ *
+ * The values are kept in an int array in the order they were added, and an open-addressing hash table holds
+ * the position of each value in that array, so adding, checking and removing a value are O(1) and no value
+ * is boxed. A removed value leaves a hole in the array, which is closed the next time the array is grown.
+ * When serialized, only the values are written, in order.
+ *
+ * @version 1.0
+ */
+public class IntSet implements Serializable {
+    private static final int REMOVED = -1;
+
+    private transient int[] values;
+    private transient int[] table; // position + 1 of a value in values, 0 for an empty slot
+    private transient int end;
+    private transient int size;
+
+    /**
+     * Constructor for IntSet, initializing an empty set
+     */
+    public IntSet(){
+        this.values = new int[0];
+        rebuild(4);
+    }
+
+    /**
+     * Adds a value to the end of the set
+     *
+     * @param value The value, which must not be negative
+     * @return true if the value was added, false if it was already in the set
+     */
+    public boolean add(int value){
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        if (find(value) >= 0) {
+            return false;
+        }
+        if (end == values.length) {
+            rebuild(Math.max(4, size * 2));
+        }
+        values[end] = value;
+        insert(end);
+        end++;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes a value from the set
+     *
+     * @param value The value
+     * @return true if the value was removed, false if it was not in the set
+     */
+    public boolean remove(int value){
+        int position = find(value);
+        if (position < 0) {
+            return false;
+        }
+        values[position] = REMOVED;
+        size--;
+        return true;
+    }
+
+    /**
+     * Checks if a value is in the set
+     *
+     * @param value The value
+     * @return true if the value is in the set
+     */
+    public boolean contains(int value){
+        return find(value) >= 0;
+    }
+
+    /**
+     * Getter for the number of values in the set
+     *
+     * @return int number of values
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Getter for the values of the set, in the order they were added
+     *
+     * @return int array holding a copy of the values
+     */
+    public int[] toArray(){
+        int[] copy = new int[size];
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            if (values[i] != REMOVED) {
+                copy[count++] = values[i];
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Helper
+     * Finds the position of a value in the values array
+     *
+     * @param value The value
+     * @return int position of the value, -1 if it is not in the set
+     */
+    private int find(int value){
+        int mask = table.length - 1;
+        for (int slot = hash(value) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            if (values[table[slot] - 1] == value) {
+                return table[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Helper
+     * Puts the position of a value of the values array in the hash table
+     *
+     * @param position The position of the value
+     */
+    private void insert(int position){
+        int mask = table.length - 1;
+        int slot = hash(values[position]) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = position + 1;
+    }
+
+    /**
+     * Helper
+     * Moves the values to a new array without the holes left by removed values, and rebuilds the hash table
+     * so that it is at most half full
+     *
+     * @param capacity The length of the new array, at least the number of values
+     */
+    private void rebuild(int capacity){
+        int[] live = new int[capacity];
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            if (values[i] != REMOVED) {
+                live[count++] = values[i];
+            }
+        }
+        values = live;
+        end = count;
+        size = count;
+        table = new int[Integer.highestOneBit(capacity) * 4];
+        for (int i = 0; i < end; i++) {
+            insert(i);
+        }
+    }
+
+    /**
+     * Helper
+     * Spreads the bits of a value, since IDs given out in order would otherwise fill neighbouring slots
+     *
+     * @param value The value
+     * @return int hash of the value
+     */
+    private static int hash(int value){
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Writes the values as the count followed by the values, in order
+     *
+     * @param out The stream to write to
+     * @throws IOException if the stream cannot be written to
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (int value : toArray()) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Reads values written by writeObject
+     *
+     * @param in The stream to read from
+     * @throws IOException if the stream cannot be read from
+     * @throws ClassNotFoundException if a class of the stream cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int count = in.readInt();
+        values = new int[0];
+        rebuild(Math.max(4, count));
+        for (int i = 0; i < count; i++) {
+            add(in.readInt());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package util;
+import interfaces.IUserRegistry;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The UserRegistry class gives every username a dense int ID, so the managers can keep attendees, speakers
+ * and contacts in IntSets instead of sets of Strings, and holds the one String instance of each username
+ * that is handed back at the UI boundary.
+ *
+ * IDs are only given out for the life of the process and are never stored in a snapshot. Looking a username
+ * or an ID up takes no lock; only giving out a new ID does.
+ *
+ * @version 1.0
+ */
+public class UserRegistry implements IUserRegistry, Serializable
+{
+    private ConcurrentHashMap<String, Integer> ids;
+    private volatile String[] usernames;
+    private int count;
+
+    /**
+     * Constructor for the UserRegistry class, initializes an empty UserRegistry.
+     */
+    public UserRegistry() {
+        ids = new ConcurrentHashMap<>();
+        usernames = new String[16];
+        count = 0;
+    }
+
+    /**
+     * Returns the ID of a username, giving it the next ID if it has none yet
+     *
+     * @param username  The username to look up
+     * @return int      The ID of the username
+     */
+    @Override
+    public int getUserID(String username) {
+        Integer id = ids.get(username);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(username);
+            if (id != null) {
+                return id;
+            }
+            String[] names = usernames;
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count * 2);
+            }
+            names[count] = username;
+            usernames = names; // published before the ID, so a thread that sees the ID sees the username
+            ids.put(username, count);
+            return count++;
+        }
+    }
+
+    /**
+     * Returns the username of an ID
+     *
+     * @param userID    The ID to look up
+     * @return String   The shared instance of the username, null if no username has the ID
+     */
+    @Override
+    public String getUsername(int userID) {
+        String[] names = usernames;
+        return userID < 0 || userID >= names.length ? null : names[userID];
+    }
+
+    /**
+     * Returns the shared instance of a username
+     *
+     * @param username  The username to look up
+     * @return String   The shared instance, username itself if the username has no ID
+     */
+    @Override
+    public String canonical(String username) {
+        Integer id = ids.get(username);
+        return id == null ? username : usernames[id];
+    }
+
+    /**
+     * Returns the number of usernames that have an ID
+     *
+     * @return int      The number of usernames
+     */
+    public int size() {
+        return ids.size();
+    }
+}